@@ -0,0 +1,326 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+/**
+ * SimulationBenchmark measures the hot paths of the simulation:
+ * Graph.pheromoneLevel, Graph.adjacentTo, Graph.tick, Simulator.tick and
+ * PopulationSimulator.tick. It
+ * runs them on grids and on graphs read from files, with different numbers of
+ * ants, and prints one line per measurement with the throughput and the number
+ * of bytes allocated per operation, on all threads of the program together.
+ * The colonies are fed before every tick, so ants do not run out of stock to
+ * eat; as Simulator.dropSugar doubles a stock on every delivery, a stock can
+ * still overflow within a tick and starve its ants, so the simulator lines
+ * also show the mean number of live ants.
+ *
+ * Compile it together with the classes of the three parts and run it with, for
+ * example:
+ *
+ * java SimulationBenchmark grids=10,100,1000,2000 ants=10,1000,100000,1000000
+ * files=graph1.txt threads=1,8
+ *
+ * Every run uses a SeededRandomSource, so two runs with the same seed do the
+ * same work and their numbers can be compared.
+ */
+public class SimulationBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int MEASURED_ITERATIONS = 5;
+    private static final long ITERATION_NANOS = 1_000_000_000L;
+    private static final int COLONIES = 4;
+
+    private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory
+            .getThreadMXBean();
+
+    private static long seed = 1;
+
+    /**
+     * Adds up the results of the lookups, so that the JIT cannot leave them
+     * out. Printed at the end.
+     */
+    private static long sink;
+
+    /**
+     * Reads the settings from arguments of the form name=value,value and runs
+     * every combination of graph and ant count.
+     */
+    public static void main(String[] args) throws IOException {
+        int[] grids = { 10, 100, 1000, 2000 };
+        int[] antCounts = { 10, 1000, 100000, 1000000 };
+        int[] threadCounts = { 1 };
+        String[] files = new String[0];
+        for (String arg : args) {
+            String[] setting = arg.split("=", 2);
+            if (setting.length != 2) {
+                throw new IllegalArgumentException("Expected name=value, got: " + arg);
+            }
+            if (setting[0].equals("grids")) {
+                grids = parseInts(setting[1]);
+            } else if (setting[0].equals("ants")) {
+                antCounts = parseInts(setting[1]);
+            } else if (setting[0].equals("threads")) {
+                threadCounts = parseInts(setting[1]);
+            } else if (setting[0].equals("files")) {
+                files = setting[1].split(",");
+            } else if (setting[0].equals("seed")) {
+                seed = Long.parseLong(setting[1]);
+            } else {
+                throw new IllegalArgumentException("Unknown setting: " + setting[0]);
+            }
+        }
+
+        System.out.println(String.format("%-60s %-22s %16s %14s %12s", "benchmark", "graph", "ops/s", "bytes/op",
+                "live ants"));
+        for (int size : grids) {
+            String label = size + "x" + size;
+            benchmarkGraph(label, () -> new Graph(size, size, createColonies(), 0.01, 5, new SeededRandomSource(seed)));
+            for (int antCount : antCounts) {
+                for (int threads : threadCounts) {
+                    benchmarkSimulator(label, antCount, threads,
+                            () -> new Graph(size, size, createColonies(), 0.01, 5, new SeededRandomSource(seed)));
+                }
+                benchmarkPopulation(label, antCount,
+                        () -> new Graph(size, size, createColonies(), 0.01, 5, new SeededRandomSource(seed)));
+            }
+        }
+        for (String file : files) {
+            int colonies = RunSimulation.countColoniesInFile(file);
+            benchmarkGraph(file, () -> new Graph(file, createColonies(colonies), 0.01, 5, new SeededRandomSource(seed)));
+            for (int antCount : antCounts) {
+                for (int threads : threadCounts) {
+                    benchmarkSimulator(file, antCount, threads,
+                            () -> new Graph(file, createColonies(colonies), 0.01, 5, new SeededRandomSource(seed)));
+                }
+                benchmarkPopulation(file, antCount,
+                        () -> new Graph(file, createColonies(colonies), 0.01, 5, new SeededRandomSource(seed)));
+            }
+        }
+        System.out.println("sink " + sink);
+    }
+
+    /**
+     * Measures pheromoneLevel, adjacentTo and tick on one graph. The node pairs
+     * looked up are the edges of the graph, visited in a fixed shuffled order.
+     */
+    private static void benchmarkGraph(String label, GraphFactory factory) {
+        Graph graph = factory.create();
+        Node[] sources = new Node[graph.nodeCount() * 2];
+        Node[] targets = new Node[sources.length];
+        RandomSource random = new SeededRandomSource(seed);
+        int pairs = 0;
+        while (pairs < sources.length) {
+            int number = random.randomInt(graph.nodeCount());
+            Node[] adjacent = graph.adjacentNodes(number);
+            if (adjacent.length > 0) {
+                sources[pairs] = graph.node(number);
+                targets[pairs] = adjacent[random.randomInt(adjacent.length)];
+                pairs = pairs + 1;
+            }
+        }
+
+        int[] lookup = new int[1];
+        measure("Graph.pheromoneLevel", label, () -> {
+            int i = lookup[0];
+            sink = sink + graph.pheromoneLevel(sources[i], targets[i]);
+            lookup[0] = i + 1 == sources.length ? 0 : i + 1;
+            return 1;
+        });
+        measure("Graph.adjacentTo", label, () -> {
+            int i = lookup[0];
+            sink = sink + graph.adjacentTo(sources[i]).length;
+            lookup[0] = i + 1 == sources.length ? 0 : i + 1;
+            return 1;
+        });
+        measure("Graph.tick", label, () -> {
+            graph.tick();
+            return 1;
+        });
+        graph.useLazyEvaporation(true);
+        measure("Graph.tick (lazy evaporation)", label, () -> {
+            graph.tick();
+            return 1;
+        });
+    }
+
+    /**
+     * Measures Simulator.tick with the given number of ants, spread over the
+     * colonies, as ticks per second and as ant-moves per second. The ant-moves
+     * count the live ants before every tick.
+     */
+    private static void benchmarkSimulator(String label, int antCount, int threads, GraphFactory factory) {
+        Graph graph = factory.create();
+        List<Colony> colonies = new ArrayList<>();
+        for (int i = 0; i < graph.nodeCount(); i = i + 1) {
+            if (graph.node(i) instanceof Colony) {
+                colonies.add((Colony) graph.node(i));
+            }
+        }
+        Ant[] ants = new Ant[antCount];
+        for (int i = 0; i < ants.length; i = i + 1) {
+            ants[i] = new Ant(colonies.get(i % colonies.size()));
+        }
+        Simulator simulator = new Simulator(graph, ants, 1, 10, new SeededRandomSource(seed));
+        simulator.useParallelTick(threads);
+
+        String name = "Simulator.tick (" + antCount + " ants at start, " + threads + " threads)";
+        try {
+            measure(name, label, () -> {
+                feed(colonies, antCount);
+                simulator.tick();
+                return 1;
+            }, simulator::liveAntCount);
+            measure(name.replace("tick", "tick ant-moves"), label, () -> {
+                feed(colonies, antCount);
+                long moves = simulator.liveAntCount();
+                simulator.tick();
+                return moves;
+            }, simulator::liveAntCount);
+        } finally {
+            simulator.close();
+        }
+    }
+
+    /**
+     * Measures PopulationSimulator.tick with the given number of ants, spread
+     * over the colonies in the same way as for Simulator.tick.
+     */
+    private static void benchmarkPopulation(String label, int antCount, GraphFactory factory) {
+        Graph graph = factory.create();
+        List<Colony> colonies = new ArrayList<>();
+        for (int i = 0; i < graph.nodeCount(); i = i + 1) {
+            if (graph.node(i) instanceof Colony) {
+                colonies.add((Colony) graph.node(i));
+            }
+        }
+        AntPopulation ants = new AntPopulation(antCount);
+        for (int i = 0; i < antCount; i = i + 1) {
+            ants.add(graph.nodeNumber(colonies.get(i % colonies.size())));
+        }
+        PopulationSimulator simulator = new PopulationSimulator(graph, ants, 1, 10, new SeededRandomSource(seed));
+
+        String name = "PopulationSimulator.tick (" + antCount + " ants at start)";
+        measure(name, label, () -> {
+            feed(colonies, antCount);
+            simulator.tick();
+            return 1;
+        }, ants::size);
+        measure(name.replace("tick", "tick ant-moves"), label, () -> {
+            feed(colonies, antCount);
+            long moves = ants.size();
+            simulator.tick();
+            return moves;
+        }, ants::size);
+    }
+
+    /**
+     * Gives every colony at least enough sugar for all ants to eat once, so that
+     * none starves in the next tick. It costs one check per colony.
+     */
+    private static void feed(List<Colony> colonies, int antCount) {
+        for (Colony colony : colonies) {
+            if (colony.sugar() < antCount) {
+                colony.setSugar(antCount);
+            }
+        }
+    }
+
+    /**
+     * Measures an operation on a graph without ants.
+     */
+    private static void measure(String name, String label, Operation operation) {
+        measure(name, label, operation, null);
+    }
+
+    /**
+     * Runs the operation repeatedly for a fixed time per iteration, first to warm
+     * up and then to measure, and prints the mean throughput and allocation. Each
+     * call of the operation returns how many operations it did. If a count of
+     * live ants is given, its mean at the end of the measured iterations is
+     * printed too.
+     */
+    private static void measure(String name, String label, Operation operation, LongSupplier liveAnts) {
+        double opsPerSecond = 0;
+        double alive = 0;
+        double bytesPerOp = 0;
+        for (int iteration = 0; iteration < WARMUP_ITERATIONS + MEASURED_ITERATIONS; iteration = iteration + 1) {
+            long ops = 0;
+            long bytesBefore = allocatedBytes();
+            long start = System.nanoTime();
+            long elapsed;
+            do {
+                ops = ops + operation.run();
+                elapsed = System.nanoTime() - start;
+            } while (elapsed < ITERATION_NANOS);
+            long bytes = allocatedBytes() - bytesBefore;
+            if (iteration >= WARMUP_ITERATIONS) {
+                opsPerSecond += ops * 1e9 / elapsed / MEASURED_ITERATIONS;
+                bytesPerOp += (double) bytes / Math.max(ops, 1) / MEASURED_ITERATIONS;
+                if (liveAnts != null) {
+                    alive += (double) liveAnts.getAsLong() / MEASURED_ITERATIONS;
+                }
+            }
+        }
+        String live = liveAnts == null ? "-" : String.format("%.0f", alive);
+        System.out.println(
+                String.format("%-60s %-22s %16.1f %14.2f %12s", name, label, opsPerSecond, bytesPerOp, live));
+    }
+
+    /**
+     * Returns the bytes allocated so far by all live threads, such as the
+     * workers of a parallel tick as well as the calling thread. A thread that
+     * ends between two calls takes its allocation with it, but the workers of
+     * a Simulator live until it is closed.
+     */
+    private static long allocatedBytes() {
+        long total = 0;
+        for (long bytes : THREADS.getThreadAllocatedBytes(THREADS.getAllThreadIds())) {
+            if (bytes > 0) {
+                total = total + bytes;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Creates the colonies placed on a grid.
+     */
+    private static Colony[] createColonies() {
+        return createColonies(COLONIES);
+    }
+
+    /**
+     * Creates the given number of colonies.
+     */
+    private static Colony[] createColonies(int amount) {
+        return RunSimulation.createColonies(amount);
+    }
+
+    /**
+     * Splits a comma-separated list of numbers.
+     */
+    private static int[] parseInts(String list) {
+        String[] parts = list.split(",");
+        int[] numbers = new int[parts.length];
+        for (int i = 0; i < parts.length; i = i + 1) {
+            numbers[i] = Integer.parseInt(parts[i].trim());
+        }
+        return numbers;
+    }
+
+    /**
+     * One call of a measured operation.
+     */
+    private interface Operation {
+        long run();
+    }
+
+    /**
+     * Builds a fresh graph for one benchmark.
+     */
+    private interface GraphFactory {
+        Graph create();
+    }
+}
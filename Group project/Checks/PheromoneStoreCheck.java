@@ -0,0 +1,118 @@
+import java.util.Random;
+
+/**
+ * PheromoneStoreCheck checks that a PheromoneStore gives the same pheromone
+ * levels as an Edge does. It applies the same random sequences of raises,
+ * ticks and reads to an array of Edge instances, using
+ * Edge.decreasePheromones on every tick, and to three stores: one with eager
+ * evaporation, one with lazy evaporation, and one that switches between the
+ * two modes at random points. After every step it compares the level of one
+ * Edge, and at the end every level. It reports the first difference and exits
+ * with status 1.
+ *
+ * Compile it together with the classes of the three parts and run it with, for
+ * example:
+ *
+ * java PheromoneStoreCheck sequences=200 steps=5000 seed=1
+ */
+public class PheromoneStoreCheck {
+
+    private static final int MAX_EDGES = 40;
+    private static final int MAX_RAISE = 12;
+
+    /**
+     * Reads the settings from arguments of the form name=value and runs the
+     * sequences.
+     */
+    public static void main(String[] args) {
+        int sequences = 200;
+        int steps = 5000;
+        long seed = 1;
+        for (String arg : args) {
+            String[] setting = arg.split("=", 2);
+            if (setting.length != 2) {
+                throw new IllegalArgumentException("Expected name=value, got: " + arg);
+            }
+            if (setting[0].equals("sequences")) {
+                sequences = Integer.parseInt(setting[1]);
+            } else if (setting[0].equals("steps")) {
+                steps = Integer.parseInt(setting[1]);
+            } else if (setting[0].equals("seed")) {
+                seed = Long.parseLong(setting[1]);
+            } else {
+                throw new IllegalArgumentException("Unknown setting: " + setting[0]);
+            }
+        }
+
+        for (int sequence = 0; sequence < sequences; sequence = sequence + 1) {
+            String difference = runSequence(new Random(seed + sequence), steps);
+            if (difference != null) {
+                System.out.println("Sequence " + sequence + " (seed " + (seed + sequence) + "): " + difference);
+                System.exit(1);
+            }
+        }
+        System.out.println("All " + sequences + " sequences of " + steps + " steps agree with Edge");
+    }
+
+    /**
+     * Runs one random sequence of operations and returns a description of the
+     * first difference, or null if there is none.
+     */
+    private static String runSequence(Random random, int steps) {
+        int edgeCount = 1 + random.nextInt(MAX_EDGES);
+        Edge[] edges = new Edge[edgeCount];
+        for (int i = 0; i < edgeCount; i = i + 1) {
+            edges[i] = new Edge(new Node(), new Node());
+        }
+        PheromoneStore eager = new PheromoneStore(edgeCount);
+        PheromoneStore lazy = new PheromoneStore(edgeCount);
+        lazy.setLazy(true);
+        PheromoneStore switching = new PheromoneStore(edgeCount);
+
+        for (int step = 0; step < steps; step = step + 1) {
+            int operation = random.nextInt(10);
+            int edge = random.nextInt(edgeCount);
+            if (operation < 3) {
+                int amount = random.nextInt(MAX_RAISE + 1);
+                edges[edge].raisePheromones(amount);
+                eager.raise(edge, amount);
+                lazy.raise(edge, amount);
+                switching.raise(edge, amount);
+            } else if (operation < 7) {
+                for (Edge e : edges) {
+                    e.decreasePheromones();
+                }
+                eager.decay();
+                lazy.decay();
+                switching.decay();
+            } else if (operation < 8) {
+                switching.setLazy(!switching.isLazy());
+            }
+            String difference = compare(step, edge, edges[edge], eager, lazy, switching);
+            if (difference != null) {
+                return difference;
+            }
+        }
+        for (int edge = 0; edge < edgeCount; edge = edge + 1) {
+            String difference = compare(steps, edge, edges[edge], eager, lazy, switching);
+            if (difference != null) {
+                return difference;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Compares the level of one Edge in the three stores with the Edge itself.
+     */
+    private static String compare(int step, int number, Edge edge, PheromoneStore eager, PheromoneStore lazy,
+            PheromoneStore switching) {
+        int expected = edge.pheromones();
+        if (eager.level(number) != expected || lazy.level(number) != expected
+                || switching.level(number) != expected) {
+            return "step " + step + ", edge " + number + ": Edge " + expected + ", eager " + eager.level(number)
+                    + ", lazy " + lazy.level(number) + ", switching " + switching.level(number);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,257 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * TiledSimulationCheck checks that GridTile follows the rules its class comment
+ * gives. For random grids and settings, it runs a model of those rules built
+ * on the classes BatchSimulation uses: a Graph built with buildThreads, Ant
+ * and Colony instances, and the pickup, choice, drop and eat steps of
+ * Simulator, but with a random stream per ant and tick and with the raises of
+ * a move step applied after it. It compares the statistics of the model with
+ * those of one GridTile covering the whole grid, and for the first runs also
+ * with TiledSimulation split over worker processes. It reports the first
+ * difference and exits with status 1.
+ *
+ * Compile it together with the classes of the three parts and run it with, for
+ * example:
+ *
+ * java TiledSimulationCheck runs=20 ticks=300 seed=1 split=2x2 splitRuns=2
+ */
+public class TiledSimulationCheck {
+
+    /**
+     * Reads the settings from arguments of the form name=value and runs the
+     * checks.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int runs = 20;
+        int ticks = 300;
+        long seed = 1;
+        int tilesX = 2;
+        int tilesY = 2;
+        int splitRuns = 2;
+        for (String arg : args) {
+            String[] setting = arg.split("=", 2);
+            if (setting.length != 2) {
+                throw new IllegalArgumentException("Expected name=value, got: " + arg);
+            }
+            if (setting[0].equals("runs")) {
+                runs = Integer.parseInt(setting[1]);
+            } else if (setting[0].equals("ticks")) {
+                ticks = Integer.parseInt(setting[1]);
+            } else if (setting[0].equals("seed")) {
+                seed = Long.parseLong(setting[1]);
+            } else if (setting[0].equals("split")) {
+                String[] split = setting[1].split("x", 2);
+                tilesX = Integer.parseInt(split[0]);
+                tilesY = Integer.parseInt(split[1]);
+            } else if (setting[0].equals("splitRuns")) {
+                splitRuns = Integer.parseInt(setting[1]);
+            } else {
+                throw new IllegalArgumentException("Unknown setting: " + setting[0]);
+            }
+        }
+
+        for (int run = 0; run < runs; run = run + 1) {
+            Random random = new Random(seed + run);
+            List<String> settings = new ArrayList<>();
+            settings.add("width=" + (Math.max(tilesX, 2) + random.nextInt(40)));
+            settings.add("depth=" + (Math.max(tilesY, 2) + random.nextInt(40)));
+            settings.add("colonies=" + (1 + random.nextInt(4)));
+            settings.add("antsPerColony=" + (1 + random.nextInt(50)));
+            settings.add("sugarProbability=" + String.format(Locale.ROOT, "%.3f", random.nextDouble() / 2));
+            settings.add("sugarAverage=" + (1 + random.nextInt(8)));
+            settings.add("carriedSugar=" + (1 + random.nextInt(5)));
+            settings.add("droppedPheromones=" + (1 + random.nextInt(15)));
+            settings.add("spawnPerNode=" + random.nextBoolean());
+            settings.add("ticks=" + ticks);
+            settings.add("seed=" + random.nextInt(1000000));
+            SimulationSettings parsed = SimulationSettings.fromArgs(settings.toArray(new String[0]));
+
+            Map<String, Long> expected = runModel(parsed);
+            String difference = compare("one tile", expected, runOneTile(parsed));
+            if (difference == null && run < splitRuns) {
+                settings.add("tilesX=" + tilesX);
+                settings.add("tilesY=" + tilesY);
+                String[] splitArgs = settings.toArray(new String[0]);
+                Map<String, Long> split = new LinkedHashMap<>();
+                for (Map.Entry<String, String> statistic : TiledSimulation
+                        .run(SimulationSettings.fromArgs(splitArgs), splitArgs).entrySet()) {
+                    if (expected.containsKey(statistic.getKey())) {
+                        split.put(statistic.getKey(), Long.parseLong(statistic.getValue()));
+                    }
+                }
+                difference = compare(tilesX + "x" + tilesY + " tiles", expected, split);
+            }
+            if (difference != null) {
+                System.out.println("Run " + run + " (" + String.join(" ", settings) + "): " + difference);
+                System.exit(1);
+            }
+        }
+        System.out.println("All " + runs + " runs of " + ticks + " ticks agree with the model");
+    }
+
+    /**
+     * Runs the model of the GridTile rules on a Graph and returns its
+     * statistics.
+     */
+    private static Map<String, Long> runModel(SimulationSettings settings) {
+        long seed = Long.parseLong(settings.text("seed"));
+        int droppedPheromones = settings.integer("droppedPheromones");
+        int sugarCapacity = settings.integer("carriedSugar");
+        Colony[] colonies = RunSimulation.createColonies(settings.integer("colonies"));
+        Graph graph = new Graph(settings.integer("width"), settings.integer("depth"), colonies,
+                settings.decimal("sugarProbability"), settings.integer("sugarAverage"), new SeededRandomSource(seed),
+                1);
+        graph.useSpawnPerNode(settings.flag("spawnPerNode", false));
+        Ant[] ants = BatchSimulation.createAnts(colonies, settings.integer("antsPerColony"));
+        SeededRandomSource antRandom = new SeededRandomSource(0);
+        int[] raised = new int[ants.length];
+
+        int ticks = settings.integer("ticks");
+        for (long tick = 0; tick < ticks; tick = tick + 1) {
+            graph.tick();
+            int raises = 0;
+            for (int i = 0; i < ants.length; i = i + 1) {
+                Ant ant = ants[i];
+                if (ant == null) {
+                    continue;
+                }
+                Node current = ant.current();
+                Node next;
+                if (!ant.carrying() && current.sugar() > 0 && !ant.isAtHome()) {
+                    graph.takeSugar(current);
+                    ant.pickUpSugar();
+                    next = ant.previous();
+                } else {
+                    antRandom.reseed(seed, tick, i);
+                    next = chooseNext(graph, current, ant.previous(), antRandom);
+                }
+                raised[raises] = graph.edgeNumber(graph.nodeNumber(current), graph.nodeNumber(next));
+                raises = raises + 1;
+                ant.move(next);
+            }
+            for (int r = 0; r < raises; r = r + 1) {
+                graph.raisePheromones(raised[r], droppedPheromones);
+            }
+            for (Ant ant : ants) {
+                if (ant != null && ant.isAtHome() && ant.carrying()) {
+                    ant.dropSugar();
+                    ant.home().topUp(ant.home().sugar() + sugarCapacity);
+                }
+            }
+            for (int i = 0; i < ants.length; i = i + 1) {
+                if (ants[i] != null && ants[i].isAtHome() && !ants[i].home().tryConsume()) {
+                    ants[i] = null;
+                }
+            }
+        }
+
+        Map<String, Long> statistics = new LinkedHashMap<>();
+        long antsAlive = 0;
+        for (int c = 0; c < colonies.length; c = c + 1) {
+            long alive = 0;
+            for (Ant ant : ants) {
+                if (ant != null && ant.home() == colonies[c]) {
+                    alive = alive + 1;
+                }
+            }
+            antsAlive = antsAlive + alive;
+            statistics.put("colony" + (c + 1) + ".antsAlive", alive);
+            statistics.put("colony" + (c + 1) + ".sugar", (long) colonies[c].sugar());
+        }
+        statistics.put("antsAlive", antsAlive);
+        statistics.put("nodeSugar", graph.nodeSugar());
+        long pheromones = 0;
+        for (int e = 0; e < graph.edgeCount(); e = e + 1) {
+            pheromones = pheromones + graph.pheromoneLevel(e);
+        }
+        statistics.put("pheromones", pheromones);
+        return statistics;
+    }
+
+    /**
+     * Chooses the next Node as Simulator does, drawing from the given stream
+     * only when there is a choice.
+     */
+    private static Node chooseNext(Graph graph, Node current, Node previous, RandomSource random) {
+        int number = graph.nodeNumber(current);
+        int degree = graph.degree(number);
+        int previousNumber = current != previous && degree != 1 ? graph.nodeNumber(previous) : -1;
+        int[] candidates = new int[degree];
+        int[] totals = new int[degree];
+        int count = 0;
+        int total = 0;
+        for (int k = 0; k < degree; k = k + 1) {
+            int neighbour = graph.neighbour(number, k);
+            if (neighbour != previousNumber) {
+                total += graph.pheromoneLevel(graph.adjacentEdge(number, k)) + 1;
+                candidates[count] = neighbour;
+                totals[count] = total;
+                count = count + 1;
+            }
+        }
+        if (count == 1) {
+            return graph.node(candidates[0]);
+        }
+        int randomNumber = random.randomInt(total);
+        for (int k = 0; k < count - 1; k = k + 1) {
+            if (randomNumber < totals[k]) {
+                return graph.node(candidates[k]);
+            }
+        }
+        return graph.node(candidates[count - 1]);
+    }
+
+    /**
+     * Runs one GridTile covering the whole grid and returns its statistics.
+     */
+    private static Map<String, Long> runOneTile(SimulationSettings settings) throws IOException {
+        int width = settings.integer("width");
+        int depth = settings.integer("depth");
+        GridTile tile = new GridTile(width, depth, settings.integer("colonies"), settings.decimal("sugarProbability"),
+                settings.integer("sugarAverage"), settings.integer("antsPerColony"),
+                settings.integer("carriedSugar"), settings.integer("droppedPheromones"),
+                Long.parseLong(settings.text("seed")), 0, width, 0, depth);
+        tile.useSpawnPerNode(settings.flag("spawnPerNode", false));
+        int ticks = settings.integer("ticks");
+        for (int tick = 0; tick < ticks; tick = tick + 1) {
+            tile.tick();
+        }
+        tile.close();
+
+        Map<String, Long> statistics = new LinkedHashMap<>();
+        int[] alive = tile.liveAntsPerColony();
+        long[] stock = tile.colonySugar();
+        long antsAlive = 0;
+        for (int c = 0; c < alive.length; c = c + 1) {
+            antsAlive = antsAlive + alive[c];
+            statistics.put("colony" + (c + 1) + ".antsAlive", (long) alive[c]);
+            statistics.put("colony" + (c + 1) + ".sugar", stock[c]);
+        }
+        statistics.put("antsAlive", antsAlive);
+        statistics.put("nodeSugar", tile.nodeSugar());
+        statistics.put("pheromones", tile.pheromones());
+        return statistics;
+    }
+
+    /**
+     * Compares statistics with those of the model and returns a description of
+     * the first difference, or null if there is none.
+     */
+    private static String compare(String name, Map<String, Long> expected, Map<String, Long> actual) {
+        for (Map.Entry<String, Long> statistic : expected.entrySet()) {
+            Long value = actual.get(statistic.getKey());
+            if (!statistic.getValue().equals(value)) {
+                return name + ", " + statistic.getKey() + ": model " + statistic.getValue() + ", " + name + " "
+                        + value;
+            }
+        }
+        return null;
+    }
+}
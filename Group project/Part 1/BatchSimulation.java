@@ -0,0 +1,257 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/*
+ * This is a non-interactive entry point for the Ant Colony Simulation. It takes
+ * every parameter from the program arguments or a properties file (see
+ * SimulationSettings), runs the simulation without any output per tick, and
+ * writes the final statistics as name=value lines, to the file given by the
+ * output setting or else to the screen.
+ *
+ * With the checkpoint setting, the state of the simulation is saved to that
+ * file every checkpointEvery ticks (default 10000) and at the end. The file is
+ * written on a background thread while the simulation goes on. The resume
+ * setting continues a simulation from such a file; the other settings must be
+ * the same as those of the saved simulation, including its seed.
+ *
+ * The buildThreads setting builds a grid with that many threads (see the
+ * Graph constructor taking a number of threads). Such a grid differs from the
+ * one built without the setting from the same seed.
+ *
+ * With spawnPerNode=true, sugarProbability is the probability of sugar
+ * spawning on each Node on each tick, instead of on one Node of the graph (see
+ * Graph.useSpawnPerNode).
+ *
+ * The metricsCsv setting writes the SimulationMetrics of the run to that file
+ * every metricsInterval milliseconds (default 1000), and the jmxName setting
+ * shows them through JMX under that name while the simulation runs.
+ *
+ * Example: java BatchSimulation sugarProbability=0.01 sugarAverage=5
+ * carriedSugar=2 droppedPheromones=10 width=100 depth=100 colonies=3
+ * antsPerColony=50 ticks=100000 seed=42
+ */
+public class BatchSimulation {
+
+    /*
+     * This method runs one simulation from the program arguments.
+     */
+    public static void main(String[] args) throws IOException {
+        SimulationSettings settings;
+        Map<String, String> statistics;
+        try {
+            settings = SimulationSettings.fromArgs(args);
+            statistics = run(settings);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Invalid settings, error:  " + e.getMessage());
+            System.exit(-1);
+            return;
+        }
+
+        Writer out = settings.has("output") ? new FileWriter(settings.text("output")) : new PrintWriter(System.out);
+        for (Map.Entry<String, String> statistic : statistics.entrySet()) {
+            out.write(statistic.getKey() + "=" + statistic.getValue() + System.lineSeparator());
+        }
+        out.flush();
+        if (settings.has("output")) {
+            out.close();
+        }
+    }
+
+    /*
+     * This method sets up and runs one simulation. Argument: the settings.
+     * Returns the final statistics, in a fixed order, by name.
+     */
+    public static Map<String, String> run(SimulationSettings settings) throws IOException {
+        if ((settings.has("checkpoint") || settings.has("resume")) && !settings.has("seed")) {
+            throw new IllegalArgumentException("Settings checkpoint and resume need a seed");
+        }
+        SimulationCheckpoint resumed = settings.has("resume") ? readCheckpoint(settings.text("resume")) : null;
+        RandomSource random = settings.has("seed") ? new SeededRandomSource(Long.parseLong(settings.text("seed")))
+                : new RandomUtilsSource();
+        double sugarProbability = settings.decimal("sugarProbability");
+        int sugarAverage = settings.integer("sugarAverage");
+
+        Colony[] colonies;
+        Graph graph;
+        if (settings.has("graphFile")) {
+            String filename = settings.text("graphFile");
+            colonies = RunSimulation.createColonies(countColonies(filename));
+            graph = new Graph(filename, colonies, sugarProbability, sugarAverage, random);
+        } else if (settings.has("buildThreads")) {
+            colonies = RunSimulation.createColonies(settings.integer("colonies"));
+            graph = new Graph(settings.integer("width"), settings.integer("depth"), colonies, sugarProbability,
+                    sugarAverage, random, settings.integer("buildThreads"));
+        } else {
+            colonies = RunSimulation.createColonies(settings.integer("colonies"));
+            graph = new Graph(settings.integer("width"), settings.integer("depth"), colonies, sugarProbability,
+                    sugarAverage, random);
+        }
+        graph.useLazyEvaporation(settings.flag("lazyEvaporation", false));
+        graph.useSpawnPerNode(settings.flag("spawnPerNode", false));
+
+        Ant[] ants = createAnts(colonies, settings.integer("antsPerColony"));
+        Simulator simulator = new Simulator(graph, ants, settings.integer("carriedSugar"),
+                settings.integer("droppedPheromones"), random);
+        simulator.useParallelTick(settings.integer("threads", 1));
+        try {
+            SimulationMetrics metrics = null;
+            if (settings.has("metricsCsv") || settings.has("jmxName")) {
+                metrics = new SimulationMetrics(graph, colonies, ants);
+                simulator.setMetrics(metrics);
+            }
+
+            if (resumed != null) {
+                simulator.restore(resumed);
+            }
+
+            int tickNumber = settings.integer("ticks");
+            String checkpointFile = settings.text("checkpoint", null);
+            int checkpointEvery = settings.integer("checkpointEvery", 10000);
+            if (checkpointEvery < 1) {
+                throw new IllegalArgumentException("Setting checkpointEvery must be positive: " + checkpointEvery);
+            }
+            ExecutorService writer = checkpointFile == null ? null : Executors.newSingleThreadExecutor();
+            Future<Void> written = null;
+            long firstTick = simulator.ticks();
+            long start = System.nanoTime();
+            try {
+                if (settings.has("jmxName")) {
+                    metrics.register(settings.text("jmxName"));
+                }
+                if (settings.has("metricsCsv")) {
+                    metrics.startCsvDump(settings.text("metricsCsv"), settings.integer("metricsInterval", 1000));
+                }
+                while (simulator.ticks() < tickNumber) {
+                    simulator.tick();
+                    if (writer != null
+                            && (simulator.ticks() % checkpointEvery == 0 || simulator.ticks() == tickNumber)) {
+                        waitFor(written);
+                        SimulationCheckpoint checkpoint = simulator.checkpoint();
+                        written = writer.submit(() -> {
+                            checkpoint.write(checkpointFile);
+                            return null;
+                        });
+                    }
+                }
+                waitFor(written);
+            } finally {
+                if (writer != null) {
+                    writer.shutdown();
+                }
+                if (metrics != null) {
+                    metrics.close();
+                }
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            return statistics(graph, colonies, ants, tickNumber, simulator.ticks() - firstTick, seconds);
+        } finally {
+            simulator.close();
+        }
+    }
+
+    /*
+     * This method waits until a checkpoint is written, so that at most one is
+     * kept in memory at a time. Argument: the result of the write, or null.
+     */
+    private static void waitFor(Future<Void> written) throws IOException {
+        if (written == null) {
+            return;
+        }
+        try {
+            written.get();
+        } catch (ExecutionException e) {
+            throw new IOException("Could not write checkpoint", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing checkpoint", e);
+        }
+    }
+
+    /*
+     * This method creates the same number of ants for every colony. Arguments:
+     * Colony 1D array and int ants per colony. Returns Ant 1D array.
+     */
+    public static Ant[] createAnts(Colony[] colonies, int antsPerColony) {
+        Ant[] ants = new Ant[colonies.length * antsPerColony];
+        int i = 0;
+        while (i < ants.length) {
+            ants[i] = new Ant(colonies[i / antsPerColony]);
+            i = i + 1;
+        }
+        return ants;
+    }
+
+    /*
+     * This method counts the colonies of a graph file. A file that cannot be
+     * read is reported as an invalid setting.
+     */
+    private static int countColonies(String filename) {
+        try {
+            return RunSimulation.countColoniesInFile(filename);
+        } catch (IOException | RuntimeException e) {
+            throw new IllegalArgumentException("Cannot read graph file " + filename + ", error:  " + e, e);
+        }
+    }
+
+    /*
+     * This method reads the checkpoint to resume from. A file that cannot be
+     * read is reported as an invalid setting.
+     */
+    private static SimulationCheckpoint readCheckpoint(String filename) {
+        try {
+            return SimulationCheckpoint.read(filename);
+        } catch (IOException | RuntimeException e) {
+            throw new IllegalArgumentException("Cannot read checkpoint " + filename + ", error:  " + e, e);
+        }
+    }
+
+    /*
+     * This method collects the final state of a simulation: its speed, the ants
+     * alive in total and per colony, the sugar stock of every colony, the sugar
+     * left in the graph and the pheromones on all edges.
+     */
+    private static Map<String, String> statistics(Graph graph, Colony[] colonies, Ant[] ants, int tickNumber,
+            long ticksRun, double seconds) {
+        Map<String, String> statistics = new LinkedHashMap<>();
+        statistics.put("ticks", Integer.toString(tickNumber));
+        statistics.put("seconds", String.format(Locale.ROOT, "%.3f", seconds));
+        statistics.put("ticksPerSecond", String.format(Locale.ROOT, "%.1f", ticksRun / Math.max(seconds, 1e-9)));
+
+        int[] alive = new int[colonies.length];
+        int antsAlive = 0;
+        for (Ant ant : ants) {
+            if (ant != null) {
+                antsAlive = antsAlive + 1;
+                for (int c = 0; c < colonies.length; c = c + 1) {
+                    if (ant.home() == colonies[c]) {
+                        alive[c] = alive[c] + 1;
+                    }
+                }
+            }
+        }
+        statistics.put("antsAlive", Integer.toString(antsAlive));
+        statistics.put("antsDied", Integer.toString(ants.length - antsAlive));
+        for (int c = 0; c < colonies.length; c = c + 1) {
+            statistics.put("colony" + (c + 1) + ".antsAlive", Integer.toString(alive[c]));
+            statistics.put("colony" + (c + 1) + ".sugar", Integer.toString(colonies[c].sugar()));
+        }
+
+        long pheromones = 0;
+        for (int e = 0; e < graph.edgeCount(); e = e + 1) {
+            pheromones = pheromones + graph.pheromoneLevel(e);
+        }
+        statistics.put("nodeSugar", Long.toString(graph.nodeSugar()));
+        statistics.put("pheromones", Long.toString(pheromones));
+        return statistics;
+    }
+}
@@ -1,5 +1,5 @@
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.Scanner;
 
 /*
@@ -10,10 +10,13 @@ public class RunSimulation {
     // call Scanner for later access
     static Scanner scanner;
 
+    // source of all random numbers in the simulation
+    static RandomSource random = new RandomUtilsSource();
+
     /*
      * This method executes the simulation, allowing for exceptions to be thrown.
      */
-    public static void main(String[] args) throws FileNotFoundException {
+    public static void main(String[] args) throws IOException {
 
         // create new instance of Scanner
         scanner = new Scanner(System.in);
@@ -70,10 +73,7 @@ public class RunSimulation {
         else {
             filename = readUserString(scanner, "Please enter filename. Otherwise, graph1.txt is chosen.", "graph1.txt");
 
-            // read second line from graph file
-            Scanner filescanner = new Scanner(new File(filename));
-            filescanner.nextLine();
-            colonyAmount = filescanner.nextLine().trim().split(" ").length;
+            colonyAmount = countColoniesInFile(filename);
             System.out.println("The number of colonies is " + colonyAmount + ".");
 
         }
@@ -117,48 +117,58 @@ public class RunSimulation {
             System.out.println("The graph is generated by the file " + filename + ".");
 
             // create new instance of Graph instance
-            graph = new Graph(filename, colonies, sugarProbability, avgSugar);
+            try {
+                graph = new Graph(filename, colonies, sugarProbability, avgSugar, random);
+            } catch (IllegalArgumentException e) {
+                System.err.println(e.getMessage());
+                System.exit(-1);
+                return;
+            }
 
             // specify width and height of new grid based on user input
         } else {
             int[] gridSize = requestGridSize(colonyAmount);
             int width = gridSize[0];
             int depth = gridSize[1];
-            graph = new Graph(width, depth, colonies, sugarProbability, avgSugar);
+            graph = new Graph(width, depth, colonies, sugarProbability, avgSugar, random);
             System.out.println("The dimensions of your grid are " + width + " x " + depth + ".");
         }
 
         int tickNumber = (int) readValue(scanner, "How many simulations do wish to run? ");
-        int textUpdateInterval = 1;
+        int updateInterval;
 
+        // every update copies the whole state of the simulation, so a larger
+        // interval lets the simulation run faster in both modes
         if (viewMode.equalsIgnoreCase("A")) {
-            textUpdateInterval = (int) readValue(scanner, "How often do you wish to receive a text update in ticks? ");
+            updateInterval = (int) readValue(scanner, "How often do you wish to receive a text update in ticks? ");
+        } else {
+            updateInterval = (int) readValue(scanner, "How often do you wish to update the window in ticks? ");
         }
 
         // create new instance of Simulator
-        Simulator simulator = new Simulator(graph, ants, carriedSugar, droppedPheromones);
+        Simulator simulator = new Simulator(graph, ants, carriedSugar, droppedPheromones, random);
 
-        // get start node from ant array
-        Node startNode = ants[0].current();
+        // create the Visualizer, which shows snapshots of the simulation on a thread
+        // of its own, so that the simulation runs at full speed
+        boolean graphical = viewMode.equalsIgnoreCase("B");
+        AsyncVisualizer visualizer = new AsyncVisualizer(graph, ants, isGrid, graphical,
+                Math.max(1, updateInterval));
 
-        // create new instance of Visualizer
-        Visualizer visualizer = new Visualizer(graph, isGrid, startNode, ants);
-
-        if (viewMode.equalsIgnoreCase("B")) {
+        if (graphical) {
             visualizer.display();
         }
 
         // loop through simulation
         int totalTicks = 0;
         while (totalTicks < tickNumber) {
-            if (viewMode.equalsIgnoreCase("B")) {
-                visualizer.update();
-            } else if (totalTicks % textUpdateInterval == 0) {
-                visualizer.printStatus();
-            }
+            visualizer.publish(totalTicks);
             simulator.tick();
             totalTicks = totalTicks + 1;
         }
+        visualizer.close();
+        if (!graphical && visualizer.dropped() > 0) {
+            System.out.println(visualizer.dropped() + " text updates were skipped to keep up with the simulation.");
+        }
 
     }
 
@@ -206,7 +216,7 @@ public class RunSimulation {
         Ant[][] ants = new Ant[colonies.length][];
         // generate random number to ant array per colony
         while (x < colonies.length) {
-            int randomRange = RandomUtils.randomInt(n) + lowerRange;
+            int randomRange = random.randomInt(n) + lowerRange;
             Ant[] antsArr = new Ant[randomRange];
             int y = 0;
             // generate ants
@@ -247,6 +257,22 @@ public class RunSimulation {
         return ant2dTo1d(ants);
     }
 
+    /*
+     * This method reads the second line of a graph file, which lists the
+     * colonies. Argument: String filename. Returns int colony amount. Binary
+     * graph files store the amount in their header.
+     */
+    public static int countColoniesInFile(String filename) throws IOException {
+        if (GraphBinaryFile.isBinaryGraph(filename)) {
+            return GraphBinaryFile.colonyCount(filename);
+        }
+        Scanner filescanner = new Scanner(new File(filename));
+        filescanner.nextLine();
+        int colonyAmount = filescanner.nextLine().trim().split(" ").length;
+        filescanner.close();
+        return colonyAmount;
+    }
+
     /*
      * This method generates colonies and assigns it to the colony array. Argument:
      * int colony amount. Return Colony 1D array.
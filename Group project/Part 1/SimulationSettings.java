@@ -0,0 +1,145 @@
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+
+/*
+ * This class holds the parameters of one simulation, as named text values. They
+ * are read from program arguments of the form name=value, and from a properties
+ * file given by the argument config=filename. Arguments override the file.
+ *
+ * The names are: sugarProbability, sugarAverage, carriedSugar,
+ * droppedPheromones, graphFile or width, depth and colonies, antsPerColony,
+ * ticks, and optionally seed, threads, buildThreads, lazyEvaporation,
+ * spawnPerNode, output, checkpoint, checkpointEvery, resume, metricsCsv,
+ * metricsInterval and jmxName.
+ */
+public class SimulationSettings {
+
+    private Properties values;
+
+    /*
+     * This constructor creates settings from the given values.
+     */
+    public SimulationSettings(Properties values) {
+        this.values = values;
+    }
+
+    /*
+     * This method reads settings from program arguments. Argument: String array
+     * of name=value pairs. Returns the settings. A config argument is read first,
+     * so the other arguments can override values from the file.
+     */
+    public static SimulationSettings fromArgs(String[] args) throws IOException {
+        Properties values = new Properties();
+        for (String arg : args) {
+            String[] setting = splitSetting(arg);
+            if (setting[0].equals("config")) {
+                Reader reader = new FileReader(setting[1]);
+                values.load(reader);
+                reader.close();
+            }
+        }
+        for (String arg : args) {
+            String[] setting = splitSetting(arg);
+            if (!setting[0].equals("config")) {
+                values.setProperty(setting[0], setting[1]);
+            }
+        }
+        return new SimulationSettings(values);
+    }
+
+    /*
+     * This method returns a copy of these settings with one value replaced.
+     * Arguments: String name and String value. Returns new settings.
+     */
+    public SimulationSettings with(String name, String value) {
+        Properties copy = new Properties();
+        copy.putAll(values);
+        copy.setProperty(name, value);
+        return new SimulationSettings(copy);
+    }
+
+    /*
+     * This method returns the names of all values that are given.
+     */
+    public Set<String> names() {
+        return new TreeSet<>(values.stringPropertyNames());
+    }
+
+    /*
+     * This method checks whether a value is given. Argument: String name.
+     */
+    public boolean has(String name) {
+        return values.getProperty(name) != null;
+    }
+
+    /*
+     * This method returns a value as text. Argument: String name. Throws an
+     * exception if the value is missing.
+     */
+    public String text(String name) {
+        String value = values.getProperty(name);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing setting: " + name);
+        }
+        return value.trim();
+    }
+
+    /*
+     * This method returns a value as text, or the default if it is missing.
+     */
+    public String text(String name, String defaultValue) {
+        return has(name) ? text(name) : defaultValue;
+    }
+
+    /*
+     * This method returns a whole-number value. Argument: String name.
+     */
+    public int integer(String name) {
+        try {
+            return Integer.parseInt(text(name));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Setting " + name + " is not a whole number: " + text(name));
+        }
+    }
+
+    /*
+     * This method returns a whole-number value, or the default if it is missing.
+     */
+    public int integer(String name, int defaultValue) {
+        return has(name) ? integer(name) : defaultValue;
+    }
+
+    /*
+     * This method returns a decimal value. Argument: String name.
+     */
+    public double decimal(String name) {
+        try {
+            return Double.parseDouble(text(name));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Setting " + name + " is not a number: " + text(name));
+        }
+    }
+
+    /*
+     * This method returns a true/false value, or the default if it is missing.
+     */
+    public boolean flag(String name, boolean defaultValue) {
+        return has(name) ? Boolean.parseBoolean(text(name)) : defaultValue;
+    }
+
+    /*
+     * This method splits an argument into its name and value.
+     */
+    private static String[] splitSetting(String arg) {
+        String[] setting = arg.split("=", 2);
+        if (setting.length != 2) {
+            throw new IllegalArgumentException("Expected name=value, got: " + arg);
+        }
+        setting[0] = setting[0].trim();
+        return setting;
+    }
+}
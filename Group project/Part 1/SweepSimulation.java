@@ -0,0 +1,223 @@
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/*
+ * This entry point runs a parameter sweep: many independent simulations in one
+ * process, at most one per worker thread at a time. It takes the same settings
+ * as BatchSimulation. A setting named sweep.<name> gives a comma-separated list
+ * of values for <name>, and every combination of the listed values is run.
+ *
+ * Run number i is given seed + i as its seed (seed defaults to 1), so every run
+ * has its own random stream and can be repeated on its own with
+ * BatchSimulation. As runs finish, their settings and statistics are written
+ * as one JSON object per line, to the output file or else to the screen. The
+ * workers setting limits the number of simulations running at once; it
+ * defaults to the number of processors.
+ *
+ * Settings that name a file or a JMX name of one run are given to every run
+ * with its run number added, so runs do not write over each other: with
+ * checkpoint=sweep.ckpt, run 3 saves to sweep-run3.ckpt, and resume=sweep.ckpt
+ * continues run 3 from that file. The same goes for metricsCsv, and
+ * jmxName=ants:type=Sweep becomes ants:type=Sweep,run=3. The threads and
+ * buildThreads settings of a run are cut down so that all workers together
+ * use no more threads than there are processors.
+ *
+ * Example: java SweepSimulation config=base.properties
+ * sweep.sugarProbability=0.01,0.02,0.05 sweep.antsPerColony=10,100
+ * output=sweep.jsonl
+ */
+public class SweepSimulation {
+
+    private static final String SWEEP_PREFIX = "sweep.";
+
+    private static final String[] RUN_FILES = { "checkpoint", "resume", "metricsCsv" };
+
+    private static final String[] RUN_THREADS = { "threads", "buildThreads" };
+
+    /*
+     * This method runs every combination of the swept settings.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        SimulationSettings base;
+        List<SimulationSettings> runs;
+        int workers;
+        try {
+            base = SimulationSettings.fromArgs(args);
+            workers = base.integer("workers", Runtime.getRuntime().availableProcessors());
+            if (workers < 1) {
+                throw new IllegalArgumentException("Setting workers must be positive: " + workers);
+            }
+            runs = combinations(base);
+            for (int i = 0; i < runs.size(); i = i + 1) {
+                runs.set(i, perRun(runs.get(i), i, workers));
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("Invalid settings, error:  " + e.getMessage());
+            System.exit(-1);
+            return;
+        }
+        List<String> swept = sweptNames(base);
+
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        CompletionService<String> results = new ExecutorCompletionService<>(executor);
+        for (int i = 0; i < runs.size(); i = i + 1) {
+            int runNumber = i;
+            SimulationSettings settings = runs.get(i);
+            results.submit(() -> runOne(runNumber, settings, swept));
+        }
+        executor.shutdown();
+
+        Writer out = base.has("output") ? new FileWriter(base.text("output")) : new PrintWriter(System.out);
+        for (int i = 0; i < runs.size(); i = i + 1) {
+            String line;
+            try {
+                line = results.take().get();
+            } catch (ExecutionException e) {
+                line = "{\"error\":" + jsonValue(String.valueOf(e.getCause())) + "}";
+            }
+            out.write(line + System.lineSeparator());
+            out.flush();
+        }
+        if (base.has("output")) {
+            out.close();
+        }
+    }
+
+    /*
+     * This method runs one simulation of the sweep and returns its JSON line. A
+     * run that fails gives a line with the error instead of statistics.
+     */
+    private static String runOne(int runNumber, SimulationSettings settings, List<String> swept) {
+        StringBuilder line = new StringBuilder();
+        line.append("{\"run\":").append(runNumber);
+        line.append(",\"seed\":").append(settings.text("seed"));
+        for (String name : swept) {
+            line.append(",").append(jsonValue(name)).append(":").append(jsonValue(settings.text(name)));
+        }
+        try {
+            for (Map.Entry<String, String> statistic : BatchSimulation.run(settings).entrySet()) {
+                line.append(",").append(jsonValue(statistic.getKey())).append(":")
+                        .append(jsonValue(statistic.getValue()));
+            }
+        } catch (IOException | RuntimeException e) {
+            line.append(",\"error\":").append(jsonValue(String.valueOf(e)));
+        }
+        return line.append("}").toString();
+    }
+
+    /*
+     * This method expands the swept settings into the settings of every run.
+     * Argument: the base settings. Returns one settings object per run.
+     */
+    private static List<SimulationSettings> combinations(SimulationSettings base) {
+        long seed = Long.parseLong(base.text("seed", "1"));
+        List<SimulationSettings> runs = new ArrayList<>();
+        runs.add(base);
+        for (String name : sweptNames(base)) {
+            List<SimulationSettings> expanded = new ArrayList<>();
+            for (SimulationSettings run : runs) {
+                for (String value : base.text(SWEEP_PREFIX + name).split(",")) {
+                    expanded.add(run.with(name, value.trim()));
+                }
+            }
+            runs = expanded;
+        }
+        for (int i = 0; i < runs.size(); i = i + 1) {
+            runs.set(i, runs.get(i).with("seed", Long.toString(seed + i)));
+        }
+        return runs;
+    }
+
+    /*
+     * This method gives one run the settings that must differ between runs
+     * running at once: its own files and JMX name, and no more threads than its
+     * share of the processors. Arguments: the settings of the run, its number
+     * and the number of workers.
+     */
+    private static SimulationSettings perRun(SimulationSettings settings, int runNumber, int workers) {
+        SimulationSettings run = settings;
+        for (String name : RUN_FILES) {
+            if (run.has(name)) {
+                run = run.with(name, runFile(run.text(name), runNumber));
+            }
+        }
+        if (run.has("jmxName")) {
+            run = run.with("jmxName", run.text("jmxName") + ",run=" + runNumber);
+        }
+        int share = Math.max(1, Runtime.getRuntime().availableProcessors() / workers);
+        for (String name : RUN_THREADS) {
+            if (run.has(name) && run.integer(name) > share) {
+                run = run.with(name, Integer.toString(share));
+            }
+        }
+        return run;
+    }
+
+    /*
+     * This method adds a run number to a file name, before its extension if it
+     * has one: sweep.ckpt becomes sweep-run3.ckpt.
+     */
+    private static String runFile(String filename, int runNumber) {
+        int dot = filename.lastIndexOf('.');
+        int separator = Math.max(filename.lastIndexOf('/'), filename.lastIndexOf(File.separatorChar));
+        if (dot <= separator + 1) {
+            return filename + "-run" + runNumber;
+        }
+        return filename.substring(0, dot) + "-run" + runNumber + filename.substring(dot);
+    }
+
+    /*
+     * This method lists the names of the swept settings, without the prefix.
+     */
+    private static List<String> sweptNames(SimulationSettings settings) {
+        List<String> names = new ArrayList<>();
+        for (String name : settings.names()) {
+            if (name.startsWith(SWEEP_PREFIX)) {
+                names.add(name.substring(SWEEP_PREFIX.length()));
+            }
+        }
+        return names;
+    }
+
+    /*
+     * This method writes a value as JSON: numbers as they are, anything else as
+     * a quoted string, with quotes, backslashes and control characters escaped.
+     * Only values that follow the JSON number grammar count as numbers, so 010
+     * or NaN are quoted.
+     */
+    private static String jsonValue(String value) {
+        if (value.matches("-?(0|[1-9][0-9]*)(\\.[0-9]+)?([eE][-+]?[0-9]+)?")) {
+            return value;
+        }
+        StringBuilder quoted = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i = i + 1) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c == '\n') {
+                quoted.append("\\n");
+            } else if (c == '\r') {
+                quoted.append("\\r");
+            } else if (c == '\t') {
+                quoted.append("\\t");
+            } else if (c < 0x20) {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
@@ -0,0 +1,330 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * This entry point runs a grid simulation split into tiles (see GridTile), with
+ * one worker process per tile, so that grids larger than one JVM can hold can
+ * be simulated on one machine. The grid is split into tilesX bands of rows and
+ * tilesY bands of columns. Neighbouring workers exchange edges and ants over
+ * loopback sockets on the ports from basePort (default 47000) on.
+ *
+ * It takes the settings of BatchSimulation for a grid, with a seed, plus
+ * tilesX, tilesY, basePort and workerOptions (options for the worker JVMs,
+ * such as -Xmx8g). The statistics of all workers are added up and written in
+ * the format of BatchSimulation. With one tile, the simulation runs in this
+ * process; any split of the same grid and seed gives the same statistics. The
+ * spawnPerNode setting is that of BatchSimulation.
+ *
+ * The statistics are not those BatchSimulation gives for the same settings:
+ * the grid, colonies and sugar spawns are the same as with buildThreads, but
+ * the ants follow the rules of GridTile, which draw from a stream per ant and
+ * apply the raises of a move step after it. TiledSimulationCheck checks a
+ * tiled run against a model of these rules built on Graph.
+ *
+ * A worker gives up when a neighbouring worker has not connected or sent its
+ * message of a tick within linkTimeout seconds (default 600). When a worker
+ * fails, or the whole run takes longer than the timeout setting in seconds
+ * (by default there is no limit), the other workers are stopped.
+ *
+ * Example: java TiledSimulation width=20000 depth=20000 colonies=8
+ * antsPerColony=10000 sugarProbability=0.01 sugarAverage=5 carriedSugar=2
+ * droppedPheromones=10 ticks=1000 seed=42 tilesX=2 tilesY=2
+ * workerOptions=-Xmx8g
+ */
+public class TiledSimulation {
+
+    private static final long POLL_MILLIS = 100;
+
+    /*
+     * This method runs the simulation, or one of its workers when the tile
+     * setting is given.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        SimulationSettings settings;
+        try {
+            settings = SimulationSettings.fromArgs(args);
+            if (settings.has("tile")) {
+                runWorker(settings);
+                return;
+            }
+            Map<String, String> statistics = run(settings, args);
+            Writer out = settings.has("output") ? new FileWriter(settings.text("output")) : new PrintWriter(System.out);
+            for (Map.Entry<String, String> statistic : statistics.entrySet()) {
+                out.write(statistic.getKey() + "=" + statistic.getValue() + System.lineSeparator());
+            }
+            out.flush();
+            if (settings.has("output")) {
+                out.close();
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("Invalid settings, error:  " + e.getMessage());
+            System.exit(-1);
+        }
+    }
+
+    /*
+     * This method runs the whole simulation: in this process for one tile, or
+     * else by starting a worker process per tile with the given program
+     * arguments. Returns the statistics, in the order of BatchSimulation.
+     */
+    public static Map<String, String> run(SimulationSettings settings, String[] args)
+            throws IOException, InterruptedException {
+        int tiles = settings.integer("tilesX", 1) * settings.integer("tilesY", 1);
+        int ticks = settings.integer("ticks");
+        if (settings.integer("linkTimeout", 600) < 1 || settings.integer("timeout", 0) < 0) {
+            throw new IllegalArgumentException("Setting linkTimeout must be positive and timeout not negative");
+        }
+        Map<String, Long> totals = new LinkedHashMap<>();
+        long start = System.nanoTime();
+        if (tiles == 1) {
+            GridTile tile = createTile(settings, 0);
+            for (int tick = 0; tick < ticks; tick = tick + 1) {
+                tile.tick();
+            }
+            add(totals, partialStatistics(tile));
+        } else {
+            List<Process> workers = new ArrayList<>();
+            List<File> outputs = new ArrayList<>();
+            try {
+                for (int k = 0; k < tiles; k = k + 1) {
+                    File output = File.createTempFile("tile" + k + "-", ".txt");
+                    output.deleteOnExit();
+                    outputs.add(output);
+                    workers.add(startWorker(settings, args, k, output));
+                }
+                waitForWorkers(workers, settings.integer("timeout", 0));
+                for (int k = 0; k < tiles; k = k + 1) {
+                    add(totals, readStatistics(outputs.get(k)));
+                }
+            } finally {
+                for (Process worker : workers) {
+                    if (worker.isAlive()) {
+                        worker.destroyForcibly();
+                    }
+                }
+                for (File output : outputs) {
+                    output.delete();
+                }
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        int colonies = settings.integer("colonies");
+        long antsAlive = totals.getOrDefault("antsAlive", 0L);
+        Map<String, String> statistics = new LinkedHashMap<>();
+        statistics.put("ticks", Integer.toString(ticks));
+        statistics.put("seconds", String.format(Locale.ROOT, "%.3f", seconds));
+        statistics.put("ticksPerSecond", String.format(Locale.ROOT, "%.1f", ticks / Math.max(seconds, 1e-9)));
+        statistics.put("antsAlive", Long.toString(antsAlive));
+        statistics.put("antsDied", Long.toString((long) colonies * settings.integer("antsPerColony") - antsAlive));
+        for (int c = 1; c <= colonies; c = c + 1) {
+            statistics.put("colony" + c + ".antsAlive", Long.toString(totals.getOrDefault("colony" + c + ".antsAlive", 0L)));
+            statistics.put("colony" + c + ".sugar", Long.toString(totals.getOrDefault("colony" + c + ".sugar", 0L)));
+        }
+        statistics.put("nodeSugar", Long.toString(totals.getOrDefault("nodeSugar", 0L)));
+        statistics.put("pheromones", Long.toString(totals.getOrDefault("pheromones", 0L)));
+        return statistics;
+    }
+
+    /*
+     * This method runs one worker: it creates its tile, connects to the
+     * workers of the neighbouring tiles, runs the ticks and writes the
+     * statistics of its tile to the screen.
+     */
+    private static void runWorker(SimulationSettings settings) throws IOException {
+        int tile = settings.integer("tile");
+        int tilesX = settings.integer("tilesX", 1);
+        int tilesY = settings.integer("tilesY", 1);
+        int basePort = settings.integer("basePort", 47000);
+        int linkTimeout = (int) Math.min(Integer.MAX_VALUE, 1000L * settings.integer("linkTimeout", 600));
+        GridTile gridTile = createTile(settings, tile);
+
+        int tx = tile / tilesY;
+        int ty = tile % tilesY;
+        int[] neighbours = new int[4];
+        neighbours[GridTile.NORTH] = tx > 0 ? tile - tilesY : -1;
+        neighbours[GridTile.SOUTH] = tx + 1 < tilesX ? tile + tilesY : -1;
+        neighbours[GridTile.WEST] = ty > 0 ? tile - 1 : -1;
+        neighbours[GridTile.EAST] = ty + 1 < tilesY ? tile + 1 : -1;
+        ServerSocket server = new ServerSocket(basePort + tile, 4, InetAddress.getLoopbackAddress());
+        try {
+            int lower = 0;
+            for (int direction = 0; direction < 4; direction = direction + 1) {
+                if (neighbours[direction] > tile) {
+                    gridTile.setLink(direction, TileLink.connect(basePort + neighbours[direction], tile,
+                            linkTimeout));
+                } else if (neighbours[direction] >= 0) {
+                    lower = lower + 1;
+                }
+            }
+            for (int k = 0; k < lower; k = k + 1) {
+                TileLink link = TileLink.accept(server, linkTimeout);
+                int from = link.readTile();
+                int direction = Arrays.asList(neighbours[0], neighbours[1], neighbours[2], neighbours[3]).indexOf(from);
+                if (direction < 0) {
+                    throw new IOException("Tile " + from + " is not a neighbour of tile " + tile);
+                }
+                gridTile.setLink(direction, link);
+            }
+        } finally {
+            server.close();
+        }
+
+        int ticks = settings.integer("ticks");
+        for (int tick = 0; tick < ticks; tick = tick + 1) {
+            gridTile.tick();
+        }
+        for (Map.Entry<String, Long> statistic : partialStatistics(gridTile).entrySet()) {
+            System.out.println(statistic.getKey() + "=" + statistic.getValue());
+        }
+        System.out.flush();
+        gridTile.close();
+    }
+
+    /*
+     * This method creates the tile with the given number. Tiles are numbered
+     * row band by row band, tilesY tiles per band.
+     */
+    private static GridTile createTile(SimulationSettings settings, int tile) {
+        int width = settings.integer("width");
+        int depth = settings.integer("depth");
+        int tilesX = settings.integer("tilesX", 1);
+        int tilesY = settings.integer("tilesY", 1);
+        if (tilesX < 1 || tilesY < 1 || tilesX > width || tilesY > depth) {
+            throw new IllegalArgumentException("Cannot split a " + width + " x " + depth + " grid into " + tilesX
+                    + " x " + tilesY + " tiles");
+        }
+        if (!settings.has("seed")) {
+            throw new IllegalArgumentException("Missing setting: seed");
+        }
+        int tx = tile / tilesY;
+        int ty = tile % tilesY;
+        GridTile gridTile = new GridTile(width, depth, settings.integer("colonies"),
+                settings.decimal("sugarProbability"), settings.integer("sugarAverage"),
+                settings.integer("antsPerColony"), settings.integer("carriedSugar"),
+                settings.integer("droppedPheromones"),
+                Long.parseLong(settings.text("seed")), (int) ((long) width * tx / tilesX),
+                (int) ((long) width * (tx + 1) / tilesX), (int) ((long) depth * ty / tilesY),
+                (int) ((long) depth * (ty + 1) / tilesY));
+        gridTile.useSpawnPerNode(settings.flag("spawnPerNode", false));
+        return gridTile;
+    }
+
+    /*
+     * This method starts the worker process of a tile, running this class with
+     * the same program arguments and the tile setting. What the worker writes
+     * to the screen goes to the given file.
+     */
+    private static Process startWorker(SimulationSettings settings, String[] args, int tile, File output)
+            throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        if (settings.has("workerOptions")) {
+            command.addAll(Arrays.asList(settings.text("workerOptions").split("\\s+")));
+        }
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(TiledSimulation.class.getName());
+        command.addAll(Arrays.asList(args));
+        command.add("tile=" + tile);
+        return new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT)
+                .redirectOutput(output).start();
+    }
+
+    /*
+     * This method waits until every worker has finished. It throws an
+     * IOException as soon as one worker fails, or when the workers are still
+     * running after the given number of seconds, 0 meaning no limit; the
+     * caller then stops the other workers.
+     */
+    private static void waitForWorkers(List<Process> workers, int timeoutSeconds)
+            throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        int k = 0;
+        while (k < workers.size()) {
+            Process worker = workers.get(k);
+            if (worker.waitFor(POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (worker.exitValue() != 0) {
+                    throw new IOException("Worker for tile " + k + " failed with status " + worker.exitValue());
+                }
+                k = k + 1;
+            } else {
+                for (int other = k + 1; other < workers.size(); other = other + 1) {
+                    if (!workers.get(other).isAlive() && workers.get(other).exitValue() != 0) {
+                        throw new IOException("Worker for tile " + other + " failed with status "
+                                + workers.get(other).exitValue());
+                    }
+                }
+                if (timeoutSeconds > 0 && System.nanoTime() - start > TimeUnit.SECONDS.toNanos(timeoutSeconds)) {
+                    throw new IOException("Workers did not finish within " + timeoutSeconds + " seconds");
+                }
+            }
+        }
+    }
+
+    /*
+     * This method reads the name=value lines a worker wrote to its file when it
+     * was done.
+     */
+    private static Map<String, Long> readStatistics(File output) throws IOException {
+        Map<String, Long> statistics = new LinkedHashMap<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(output)));
+        try {
+            String line = reader.readLine();
+            while (line != null) {
+                String[] statistic = line.split("=", 2);
+                if (statistic.length == 2) {
+                    statistics.put(statistic[0], Long.parseLong(statistic[1].trim()));
+                }
+                line = reader.readLine();
+            }
+        } finally {
+            reader.close();
+        }
+        return statistics;
+    }
+
+    /*
+     * This method collects the statistics of one tile, to be added up with
+     * those of the other tiles.
+     */
+    private static Map<String, Long> partialStatistics(GridTile tile) {
+        Map<String, Long> statistics = new LinkedHashMap<>();
+        int[] alive = tile.liveAntsPerColony();
+        long[] stock = tile.colonySugar();
+        long antsAlive = 0;
+        for (int c = 0; c < alive.length; c = c + 1) {
+            antsAlive = antsAlive + alive[c];
+            statistics.put("colony" + (c + 1) + ".antsAlive", (long) alive[c]);
+            statistics.put("colony" + (c + 1) + ".sugar", stock[c]);
+        }
+        statistics.put("antsAlive", antsAlive);
+        statistics.put("nodeSugar", tile.nodeSugar());
+        statistics.put("pheromones", tile.pheromones());
+        return statistics;
+    }
+
+    /*
+     * This method adds statistics to the totals, name by name.
+     */
+    private static void add(Map<String, Long> totals, Map<String, Long> statistics) {
+        for (Map.Entry<String, Long> statistic : statistics.entrySet()) {
+            totals.merge(statistic.getKey(), statistic.getValue(), Long::sum);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+import java.util.Arrays;
+
+/**
+ * An AntPopulation stores ants without an object per Ant: the numbers of the
+ * home Colony, the current Node and the previous Node of every ant are kept in
+ * three int arrays, and whether it carries sugar in one bit of a long array.
+ * Node numbers are those of the Graph the ants live on. A tick of a
+ * PopulationSimulator then runs through a few arrays in order instead of
+ * following references to objects spread over the heap, and an ant takes about
+ * 12 bytes instead of an Ant object and the reference to it.
+ *
+ * Ants are numbered from 0 in the order they were added. Dead ants are removed
+ * by copying the live ones down over them and truncating, which keeps the
+ * order of the live ants; the numbers of the ants after a dead one go down.
+ */
+public class AntPopulation {
+    private int[] homes;
+    private int[] current;
+    private int[] previous;
+    private long[] carrying;
+    private int size;
+
+    /**
+     * Constructor creates an empty population with room for the given number of
+     * ants.
+     */
+    public AntPopulation(int capacity) {
+        this.homes = new int[capacity];
+        this.current = new int[capacity];
+        this.previous = new int[capacity];
+        this.carrying = new long[(capacity + 63) >>> 6];
+    }
+
+    /**
+     * Creates a population with the same number of ants for every Colony, in the
+     * order of the colonies array, all at home.
+     */
+    public static AntPopulation create(Graph graph, Colony[] colonies, int antsPerColony) {
+        AntPopulation population = new AntPopulation(colonies.length * antsPerColony);
+        for (Colony colony : colonies) {
+            int home = graph.nodeNumber(colony);
+            if (home < 0) {
+                throw new IllegalArgumentException("Colony is not part of the graph: " + colony);
+            }
+            for (int i = 0; i < antsPerColony; i = i + 1) {
+                population.add(home);
+            }
+        }
+        return population;
+    }
+
+    /**
+     * Adds an ant at its home Colony, given by Node number. Like a new Ant, it
+     * has come from its home and carries nothing.
+     */
+    public void add(int home) {
+        if (size == homes.length) {
+            int capacity = Math.max(2 * size, 16);
+            homes = Arrays.copyOf(homes, capacity);
+            current = Arrays.copyOf(current, capacity);
+            previous = Arrays.copyOf(previous, capacity);
+            carrying = Arrays.copyOf(carrying, (capacity + 63) >>> 6);
+        }
+        homes[size] = home;
+        current[size] = home;
+        previous[size] = home;
+        setCarrying(size, false);
+        size = size + 1;
+    }
+
+    /**
+     * Returns the number of live ants.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the Node number of the home Colony of an ant.
+     */
+    public int home(int ant) {
+        return homes[ant];
+    }
+
+    /**
+     * Returns the Node number of the Node an ant is on.
+     */
+    public int current(int ant) {
+        return current[ant];
+    }
+
+    /**
+     * Returns the Node number of the Node an ant came from.
+     */
+    public int previous(int ant) {
+        return previous[ant];
+    }
+
+    /**
+     * Returns true if an ant is on its home Colony.
+     */
+    public boolean isAtHome(int ant) {
+        return current[ant] == homes[ant];
+    }
+
+    /**
+     * Returns true if an ant carries sugar.
+     */
+    public boolean carrying(int ant) {
+        return (carrying[ant >>> 6] & (1L << ant)) != 0;
+    }
+
+    /**
+     * Sets whether an ant carries sugar.
+     */
+    public void setCarrying(int ant, boolean value) {
+        if (value) {
+            carrying[ant >>> 6] = carrying[ant >>> 6] | (1L << ant);
+        } else {
+            carrying[ant >>> 6] = carrying[ant >>> 6] & ~(1L << ant);
+        }
+    }
+
+    /**
+     * Moves an ant to the Node with the given number.
+     */
+    public void move(int ant, int node) {
+        previous[ant] = current[ant];
+        current[ant] = node;
+    }
+
+    /**
+     * Puts a copy of one ant in the place of another, overwriting it.
+     */
+    public void copy(int from, int to) {
+        homes[to] = homes[from];
+        current[to] = current[from];
+        previous[to] = previous[from];
+        setCarrying(to, carrying(from));
+    }
+
+    /**
+     * Removes the ants from the given number on, keeping the ones before it.
+     */
+    public void truncate(int newSize) {
+        if (newSize < 0 || newSize > size) {
+            throw new IllegalArgumentException("Cannot truncate " + size + " ants to " + newSize);
+        }
+        size = newSize;
+    }
+}
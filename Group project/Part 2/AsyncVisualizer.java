@@ -0,0 +1,157 @@
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * An AsyncVisualizer shows a running simulation from a thread of its own, so
+ * that drawing the window or printing the status does not hold the simulation
+ * up. Every few ticks the simulation publishes a snapshot: the sugar,
+ * pheromones and ants are copied to an empty copy of the Graph and of the
+ * ants, which a Visualizer shows while the simulation goes on. A snapshot
+ * published while the Visualizer is still busy with the one before is
+ * dropped.
+ */
+public class AsyncVisualizer {
+
+    private Graph graph;
+    private Ant[] ants;
+    private Graph copy;
+    private Ant[] antCopies;
+    private Visualizer visualizer;
+    private boolean graphical;
+    private int interval;
+    private ExecutorService renderer;
+    private AtomicBoolean busy = new AtomicBoolean();
+    private long published;
+    private long dropped;
+
+    /**
+     * Constructor creates a Visualizer for a copy of the given Graph and ants,
+     * showing the window when graphical is true and else printing the status,
+     * for one snapshot every given number of ticks. Each snapshot copies the
+     * whole state, so on a large graph the interval decides how much the
+     * simulation is held up.
+     */
+    public AsyncVisualizer(Graph graph, Ant[] ants, boolean isGrid, boolean graphical, int interval) {
+        if (interval < 1) {
+            throw new IllegalArgumentException("Snapshot interval must be at least 1, not " + interval);
+        }
+        this.graph = graph;
+        this.ants = ants;
+        this.copy = graph.emptyCopy();
+        this.antCopies = new Ant[ants.length];
+        this.graphical = graphical;
+        this.interval = interval;
+        copyState();
+        this.visualizer = new Visualizer(copy, isGrid, startNode(), antCopies);
+        this.renderer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "visualizer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Shows the window of the Visualizer.
+     */
+    public void display() {
+        visualizer.display();
+    }
+
+    /**
+     * Publishes a snapshot of the simulation after the given number of ticks,
+     * if that is a multiple of the interval. Must be called between ticks, from
+     * the thread running the simulation. The snapshot is dropped if the last
+     * one is still being shown.
+     */
+    public void publish(long ticks) {
+        if (ticks % interval != 0) {
+            return;
+        }
+        if (!busy.compareAndSet(false, true)) {
+            dropped = dropped + 1;
+            return;
+        }
+        copyState();
+        published = published + 1;
+        renderer.execute(() -> {
+            try {
+                if (graphical) {
+                    visualizer.update();
+                } else {
+                    visualizer.printStatus();
+                }
+            } finally {
+                busy.set(false);
+            }
+        });
+    }
+
+    /**
+     * Returns the number of snapshots shown so far.
+     */
+    public long published() {
+        return published;
+    }
+
+    /**
+     * Returns the number of snapshots dropped because the Visualizer was busy.
+     */
+    public long dropped() {
+        return dropped;
+    }
+
+    /**
+     * Waits for the last snapshot to be shown and stops the thread showing
+     * them. The window, if any, stays open.
+     */
+    public void close() {
+        renderer.shutdown();
+        try {
+            renderer.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns the copy of the Node the first living ant is on, where a
+     * Visualizer of a graph read from a file starts drawing.
+     */
+    private Node startNode() {
+        for (int i = 0; i < antCopies.length; i = i + 1) {
+            if (antCopies[i] != null) {
+                return antCopies[i].current();
+            }
+        }
+        return copy.node(0);
+    }
+
+    /**
+     * Copies the state of the simulation to the copies shown by the
+     * Visualizer. Dead ants are removed from the copies too.
+     */
+    private void copyState() {
+        graph.copyStateTo(copy);
+        for (int i = 0; i < ants.length; i = i + 1) {
+            Ant ant = ants[i];
+            if (ant == null) {
+                antCopies[i] = null;
+                continue;
+            }
+            if (antCopies[i] == null || ant.previous() == null) {
+                antCopies[i] = new Ant((Colony) copy.node(graph.nodeNumber(ant.home())));
+            }
+            if (ant.previous() != null) {
+                antCopies[i].move(copy.node(graph.nodeNumber(ant.previous())));
+            }
+            antCopies[i].move(copy.node(graph.nodeNumber(ant.current())));
+            if (ant.carrying() && !antCopies[i].carrying()) {
+                antCopies[i].pickUpSugar();
+            } else if (!ant.carrying() && antCopies[i].carrying()) {
+                antCopies[i].dropSugar();
+            }
+        }
+    }
+}
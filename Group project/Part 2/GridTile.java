@@ -0,0 +1,763 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A GridTile simulates one rectangle of a grid graph, rows x0 to x1 and columns
+ * y0 to y1 (exclusive) of the grid that Graph(width, depth, ..., threads)
+ * builds, so that a grid too large for one JVM can be split over several
+ * worker processes. Nodes are numbered as in Graph: row times depth plus
+ * column, so the grid can have at most Integer.MAX_VALUE nodes and edges.
+ *
+ * Every tile draws the same shared random numbers as that Graph constructor
+ * and Graph.tick do, in the same order, and keeps only what falls inside it.
+ * The sugar is drawn in bands of rows with a stream of their own, so a tile
+ * only draws the sugar of the bands it overlaps. It therefore has the same
+ * sugar, colonies and sugar spawns as the Graph built from the same seed,
+ * without holding or drawing the rest of the grid.
+ *
+ * A tick of a tile has the same steps and rules as Simulator.tick, with two
+ * differences that make the result independent of how the grid is split:
+ * every ant draws from its own stream, made from the seed, the tick and the
+ * number of the ant, and ants choose their next Node from the pheromones as
+ * they were at the start of the move step. The raises of the step are applied
+ * together after it. Within a tile, ants are handled in the order of their
+ * numbers, so ants on the same Node pick up sugar and eat in the same order
+ * however the grid is split. A split run therefore gives exactly the same
+ * result as a run with one tile, but not the same as Simulator, whose ants
+ * share one stream and see each other's raises at once. TiledSimulationCheck
+ * checks tiles against a model of these rules built on Graph.
+ *
+ * The pheromones of an Edge between two tiles are kept by both. After the move
+ * step, each tile sends each neighbouring tile, through a TileLink, the raises
+ * on the edges between them and the ants that crossed over. Both tiles then
+ * apply the same raises, so their copies stay equal.
+ */
+public class GridTile {
+    public static final int NORTH = 0;
+    public static final int SOUTH = 1;
+    public static final int WEST = 2;
+    public static final int EAST = 3;
+
+    private static final int DOWN = 0;
+    private static final int RIGHT = 1;
+
+    private int width;
+    private int depth;
+    private int x0;
+    private int x1;
+    private int y0;
+    private int y1;
+    private int columns;
+    private int stride;
+    private double sugarProbability;
+    private SugarDistribution sugarDistribution;
+    private boolean spawnPerNode;
+    private int sugarCapacity;
+    private int droppedPheromones;
+    private int antsPerColony;
+    private long seed;
+    private SeededRandomSource shared;
+    private SeededRandomSource antRandom = new SeededRandomSource(0);
+    private int[] sugar;
+    private int[] colonyNodes;
+    private int[] sortedColonyNodes;
+    private int[] sortedColonies;
+    private int[] down;
+    private int[] right;
+    private int[] pendingDown;
+    private int[] pendingRight;
+    private int[] antIds;
+    private int[] antHomes;
+    private int[] antCurrent;
+    private int[] antPrevious;
+    private boolean[] antCarrying;
+    private int antCount;
+    private int[] candidates = new int[4];
+    private int[] totals = new int[4];
+    private TileLink[] links = new TileLink[4];
+    private Outbox[] outboxes = { new Outbox(), new Outbox(), new Outbox(), new Outbox() };
+    private ExecutorService senders;
+    private long ticks;
+
+    /**
+     * Constructor creates the tile of rows x0 to x1 and columns y0 to y1 of a
+     * grid with the given parameters, with the ants of its colonies at home.
+     * The ants of colony c are numbered from c times antsPerColony.
+     */
+    public GridTile(int width, int depth, int colonies, double sugarProbability, int sugarAverage,
+            int antsPerColony, int sugarCapacity, int droppedPheromones, long seed, int x0, int x1, int y0, int y1) {
+        if (x0 < 0 || x1 > width || x0 >= x1 || y0 < 0 || y1 > depth || y0 >= y1) {
+            throw new IllegalArgumentException("Tile " + x0 + ".." + x1 + " x " + y0 + ".." + y1
+                    + " is not inside a grid of " + width + " x " + depth);
+        }
+        long nodeCount = (long) width * depth;
+        long edgeCount = (long) (width - 1) * depth + (long) width * (depth - 1);
+        if (nodeCount > Integer.MAX_VALUE || edgeCount > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("A grid of " + width + " x " + depth
+                    + " has more nodes or edges than an int can number");
+        }
+        if (colonies > nodeCount) {
+            throw new IllegalArgumentException("More colonies than nodes");
+        }
+        this.width = width;
+        this.depth = depth;
+        this.x0 = x0;
+        this.x1 = x1;
+        this.y0 = y0;
+        this.y1 = y1;
+        this.columns = y1 - y0;
+        this.stride = columns + 2;
+        this.sugarProbability = sugarProbability;
+        this.sugarDistribution = new SugarDistribution(sugarProbability, sugarAverage);
+        this.sugarCapacity = sugarCapacity;
+        this.droppedPheromones = droppedPheromones;
+        this.antsPerColony = antsPerColony;
+        this.seed = seed;
+        this.shared = new SeededRandomSource(seed);
+        this.sugar = new int[(x1 - x0) * columns];
+        int ringSize = (x1 - x0 + 2) * stride;
+        this.down = new int[ringSize];
+        this.right = new int[ringSize];
+        this.pendingDown = new int[ringSize];
+        this.pendingRight = new int[ringSize];
+        fillSugar();
+        placeColonies(colonies);
+        createAnts();
+    }
+
+    /**
+     * Connects this tile to the neighbouring tile in the given direction.
+     */
+    public void setLink(int direction, TileLink link) {
+        links[direction] = link;
+    }
+
+    /**
+     * Chooses the spawn mode of Graph.useSpawnPerNode. All tiles of a grid must
+     * use the same mode.
+     */
+    public void useSpawnPerNode(boolean perNode) {
+        spawnPerNode = perNode;
+    }
+
+    /**
+     * Runs the tile for one unit of time, exchanging edges and ants with the
+     * neighbouring tiles, which must run the same tick.
+     */
+    public void tick() throws IOException {
+        decay();
+        if (spawnPerNode) {
+            spawnSugarOnNodes();
+        } else if (shared.coinFlip(sugarProbability)) {
+            spawnSugar();
+        }
+        move();
+        exchange();
+        applyRaises();
+        dropSugar();
+        eatSugar();
+        ticks = ticks + 1;
+    }
+
+    /**
+     * Stops the threads that send messages to neighbouring tiles and closes the
+     * links.
+     */
+    public void close() throws IOException {
+        if (senders != null) {
+            senders.shutdown();
+        }
+        for (TileLink link : links) {
+            if (link != null) {
+                link.close();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of live ants of every colony that are in this tile.
+     */
+    public int[] liveAntsPerColony() {
+        int[] alive = new int[colonyNodes.length];
+        for (int a = 0; a < antCount; a = a + 1) {
+            alive[antIds[a] / antsPerColony] = alive[antIds[a] / antsPerColony] + 1;
+        }
+        return alive;
+    }
+
+    /**
+     * Returns the sugar stock of every colony in this tile, and 0 for the
+     * colonies elsewhere.
+     */
+    public long[] colonySugar() {
+        long[] stock = new long[colonyNodes.length];
+        for (int c = 0; c < colonyNodes.length; c = c + 1) {
+            if (isLocal(colonyNodes[c])) {
+                stock[c] = sugar[local(colonyNodes[c])];
+            }
+        }
+        return stock;
+    }
+
+    /**
+     * Returns the sugar on the nodes of this tile that are not colonies.
+     */
+    public long nodeSugar() {
+        long total = 0;
+        for (int amount : sugar) {
+            total = total + amount;
+        }
+        for (int node : colonyNodes) {
+            if (isLocal(node)) {
+                total = total - sugar[local(node)];
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Returns the pheromones on the edges that start in this tile, going down
+     * or right, so that every Edge of the grid is counted by one tile.
+     */
+    public long pheromones() {
+        long total = 0;
+        for (int i = x0; i < x1; i = i + 1) {
+            for (int j = y0; j < y1; j = j + 1) {
+                if (i + 1 < width) {
+                    total = total + down[ring(i, j)];
+                }
+                if (j + 1 < depth) {
+                    total = total + right[ring(i, j)];
+                }
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Draws the sugar of the grid in the bands of Graph.fillingInSugarInBands,
+     * one row at a time, and keeps the sugar of the nodes of this tile. Every
+     * band still splits its stream off the shared one, but only the bands that
+     * overlap this tile are drawn, up to the last row of the tile.
+     */
+    private void fillSugar() {
+        int rowsPerBand = Math.max(1, Graph.BAND_NODES / depth);
+        int[] row = new int[depth];
+        for (int band = 0; band < width; band = band + rowsPerBand) {
+            RandomSource bandRandom = shared.split();
+            int last = Math.min(band + rowsPerBand, x1);
+            if (band + rowsPerBand <= x0) {
+                continue;
+            }
+            for (int i = band; i < last; i = i + 1) {
+                sugarDistribution.fill(row, 0, depth, bandRandom);
+                if (i >= x0) {
+                    System.arraycopy(row, y0, sugar, (i - x0) * columns, columns);
+                }
+            }
+        }
+    }
+
+    /**
+     * Draws the colony positions in the order of
+     * Graph.placingColoniesWithoutReplacement. A colony replaces the Node at
+     * its position, so it starts without sugar.
+     */
+    private void placeColonies(int colonies) {
+        int nodeCount = width * depth;
+        colonyNodes = new int[colonies];
+        Map<Integer, Integer> moved = new HashMap<>();
+        for (int c = 0; c < colonies; c = c + 1) {
+            int drawn = c + shared.randomInt(nodeCount - c);
+            int node = moved.getOrDefault(drawn, drawn);
+            moved.put(drawn, moved.getOrDefault(c, c));
+            colonyNodes[c] = node;
+            if (isLocal(node)) {
+                sugar[local(node)] = 0;
+            }
+        }
+        long[] keys = new long[colonies];
+        for (int c = 0; c < colonies; c = c + 1) {
+            keys[c] = ((long) colonyNodes[c] << 32) | c;
+        }
+        Arrays.sort(keys);
+        sortedColonyNodes = new int[colonies];
+        sortedColonies = new int[colonies];
+        for (int k = 0; k < colonies; k = k + 1) {
+            sortedColonyNodes[k] = (int) (keys[k] >>> 32);
+            sortedColonies[k] = (int) keys[k];
+        }
+    }
+
+    /**
+     * Creates the ants of the colonies in this tile, in the order of their
+     * numbers.
+     */
+    private void createAnts() {
+        int capacity = 16;
+        antIds = new int[capacity];
+        antHomes = new int[capacity];
+        antCurrent = new int[capacity];
+        antPrevious = new int[capacity];
+        antCarrying = new boolean[capacity];
+        for (int c = 0; c < colonyNodes.length; c = c + 1) {
+            if (isLocal(colonyNodes[c])) {
+                for (int k = 0; k < antsPerColony; k = k + 1) {
+                    addAnt(c * antsPerColony + k, colonyNodes[c], colonyNodes[c], colonyNodes[c], false);
+                }
+            }
+        }
+    }
+
+    /**
+     * Takes one unit of pheromones off every Edge this tile keeps, never going
+     * below zero.
+     */
+    private void decay() {
+        for (int k = 0; k < down.length; k = k + 1) {
+            down[k] = Math.max(down[k] - 1, 0);
+            right[k] = Math.max(right[k] - 1, 0);
+        }
+    }
+
+    /**
+     * Puts sugar on the nodes that are not colonies with the draws of
+     * Graph.spawnSugarOnNodes, keeping the spawns on the nodes of this tile.
+     */
+    private void spawnSugarOnNodes() {
+        long nodeCount = (long) width * depth;
+        long node = sugarDistribution.skip(shared);
+        while (node < nodeCount) {
+            if (colonyIndex((int) node) < 0) {
+                int amount = sugarDistribution.sample(shared);
+                if (isLocal((int) node)) {
+                    sugar[local((int) node)] = amount;
+                }
+            }
+            node = node + 1 + sugarDistribution.skip(shared);
+        }
+    }
+
+    /**
+     * Puts sugar on one end of a random Edge, drawing in the order of
+     * Graph.spawnSugar. The edges are numbered as Graph.createEdgesBetweenNodes
+     * creates them: for every Node in order, the Edge down and then the Edge to
+     * the right.
+     */
+    private void spawnSugar() {
+        long rowEdges = 2L * depth - 1;
+        long edgeCount = (long) (width - 1) * rowEdges + (depth - 1);
+        int edge = shared.randomInt((int) edgeCount);
+        int i;
+        int j;
+        int direction;
+        if (edge < (long) (width - 1) * rowEdges) {
+            i = (int) (edge / rowEdges);
+            j = (int) (edge % rowEdges) / 2;
+            direction = (int) (edge % rowEdges) % 2 == 0 ? DOWN : RIGHT;
+        } else {
+            i = width - 1;
+            j = (int) (edge - (long) (width - 1) * rowEdges);
+            direction = RIGHT;
+        }
+        int node = i * depth + j;
+        if (!shared.coinFlip(0.50)) {
+            node = direction == DOWN ? node + depth : node + 1;
+        }
+        int amount = sugarDistribution.sample(shared);
+        if (isLocal(node)) {
+            sugar[local(node)] = amount;
+        }
+    }
+
+    /**
+     * Moves every ant of the tile, in the order of their numbers, with the
+     * pickup and choice rules of Simulator. The raises are collected and
+     * applied after the step; ants that leave the tile are sent to the
+     * neighbouring tile.
+     */
+    private void move() {
+        int kept = 0;
+        for (int a = 0; a < antCount; a = a + 1) {
+            int current = antCurrent[a];
+            int previous = antPrevious[a];
+            int local = local(current);
+            int next;
+            if (!antCarrying[a] && sugar[local] > 0 && current != antHomes[a]) {
+                sugar[local] = sugar[local] - 1;
+                antCarrying[a] = true;
+                next = previous;
+            } else {
+                next = chooseNext(antIds[a], current, previous);
+            }
+            raise(current, next);
+            int direction = directionOf(next);
+            if (direction < 0) {
+                copyAnt(a, kept);
+                antPrevious[kept] = current;
+                antCurrent[kept] = next;
+                kept = kept + 1;
+            } else {
+                outboxes[direction].addAnt(antIds[a], antHomes[a], next, current, antCarrying[a]);
+            }
+        }
+        antCount = kept;
+    }
+
+    /**
+     * Chooses the next Node of an ant: not its previous Node unless that is the
+     * only neighbour, and otherwise with a probability proportional to the
+     * pheromones on the Edge plus one.
+     */
+    private int chooseNext(int ant, int current, int previous) {
+        int i = current / depth;
+        int j = current % depth;
+        int degree = (i > 0 ? 1 : 0) + (j > 0 ? 1 : 0) + (i + 1 < width ? 1 : 0) + (j + 1 < depth ? 1 : 0);
+        boolean skipPrevious = current != previous && degree != 1;
+        int count = 0;
+        int total = 0;
+        if (i > 0 && !(skipPrevious && previous == current - depth)) {
+            total += down[ring(i - 1, j)] + 1;
+            candidates[count] = current - depth;
+            totals[count] = total;
+            count = count + 1;
+        }
+        if (j > 0 && !(skipPrevious && previous == current - 1)) {
+            total += right[ring(i, j - 1)] + 1;
+            candidates[count] = current - 1;
+            totals[count] = total;
+            count = count + 1;
+        }
+        if (i + 1 < width && !(skipPrevious && previous == current + depth)) {
+            total += down[ring(i, j)] + 1;
+            candidates[count] = current + depth;
+            totals[count] = total;
+            count = count + 1;
+        }
+        if (j + 1 < depth && !(skipPrevious && previous == current + 1)) {
+            total += right[ring(i, j)] + 1;
+            candidates[count] = current + 1;
+            totals[count] = total;
+            count = count + 1;
+        }
+        if (count == 0) {
+            throw new RuntimeException("Grid has no adjacent node for current node: " + current);
+        }
+        if (count == 1) {
+            return candidates[0];
+        }
+        antRandom.reseed(seed, ticks, ant);
+        int randomNumber = antRandom.randomInt(total);
+        for (int k = 0; k < count - 1; k = k + 1) {
+            if (randomNumber < totals[k]) {
+                return candidates[k];
+            }
+        }
+        return candidates[count - 1];
+    }
+
+    /**
+     * Records a raise of the Edge between two neighbouring nodes, the first in
+     * this tile. A raise on an Edge to another tile is also sent there.
+     */
+    private void raise(int from, int to) {
+        int type = to == from + depth || to == from - depth ? DOWN : RIGHT;
+        int start = Math.min(from, to);
+        int i = start / depth;
+        int j = start % depth;
+        addPending(type, i, j);
+        int direction = directionOf(to);
+        if (direction >= 0) {
+            outboxes[direction].addRaise(type, i, j);
+        }
+    }
+
+    private void addPending(int type, int i, int j) {
+        int[] pending = type == DOWN ? pendingDown : pendingRight;
+        pending[ring(i, j)] = pending[ring(i, j)] + droppedPheromones;
+    }
+
+    /**
+     * Sends every neighbouring tile its raises and ants, and receives theirs.
+     * The messages are sent on other threads, so that two tiles sending large
+     * messages to each other cannot block each other.
+     */
+    private void exchange() throws IOException {
+        if (senders == null) {
+            senders = Executors.newFixedThreadPool(4, runnable -> {
+                Thread thread = new Thread(runnable, "tile-sender");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        List<Future<Void>> sent = new ArrayList<>();
+        for (int direction = 0; direction < 4; direction = direction + 1) {
+            TileLink link = links[direction];
+            Outbox outbox = outboxes[direction];
+            if (link != null) {
+                sent.add(senders.submit(() -> {
+                    outbox.writeTo(link.out());
+                    return null;
+                }));
+            } else if (outbox.antCount > 0 || outbox.raiseCount > 0) {
+                throw new IllegalStateException("Tile has no neighbour in direction " + direction);
+            }
+        }
+        int before = antCount;
+        for (TileLink link : links) {
+            if (link != null) {
+                receive(link.in());
+            }
+        }
+        for (Future<Void> message : sent) {
+            try {
+                message.get();
+            } catch (ExecutionException e) {
+                throw new IOException("Could not send to neighbouring tile", e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while sending to neighbouring tile", e);
+            }
+        }
+        for (Outbox outbox : outboxes) {
+            outbox.clear();
+        }
+        if (antCount > before) {
+            sortAnts();
+        }
+    }
+
+    /**
+     * Reads the message of a neighbouring tile: raises on the edges between the
+     * tiles, and the ants that crossed into this tile.
+     */
+    private void receive(DataInputStream in) throws IOException {
+        int raises = in.readInt();
+        for (int r = 0; r < raises; r = r + 1) {
+            int type = in.readInt();
+            int i = in.readInt();
+            int j = in.readInt();
+            addPending(type, i, j);
+        }
+        int ants = in.readInt();
+        for (int a = 0; a < ants; a = a + 1) {
+            int id = in.readInt();
+            int home = in.readInt();
+            int current = in.readInt();
+            int previous = in.readInt();
+            boolean carrying = in.readBoolean();
+            addAnt(id, home, current, previous, carrying);
+        }
+    }
+
+    private void applyRaises() {
+        for (int k = 0; k < down.length; k = k + 1) {
+            down[k] = down[k] + pendingDown[k];
+            right[k] = right[k] + pendingRight[k];
+            pendingDown[k] = 0;
+            pendingRight[k] = 0;
+        }
+    }
+
+    /**
+     * Ants that are home with sugar drop it into their colony. The stock grows
+     * as Colony.topUp does when Simulator.dropSugar calls it.
+     */
+    private void dropSugar() {
+        for (int a = 0; a < antCount; a = a + 1) {
+            if (antCurrent[a] == antHomes[a] && antCarrying[a]) {
+                int home = local(antHomes[a]);
+                antCarrying[a] = false;
+                sugar[home] = sugar[home] + (sugar[home] + sugarCapacity);
+            }
+        }
+    }
+
+    /**
+     * Ants that are home eat one unit of sugar, or die if their colony has none.
+     */
+    private void eatSugar() {
+        int kept = 0;
+        for (int a = 0; a < antCount; a = a + 1) {
+            boolean alive = true;
+            if (antCurrent[a] == antHomes[a]) {
+                int home = local(antHomes[a]);
+                if (sugar[home] > 0) {
+                    sugar[home] = sugar[home] - 1;
+                } else {
+                    alive = false;
+                }
+            }
+            if (alive) {
+                copyAnt(a, kept);
+                kept = kept + 1;
+            }
+        }
+        antCount = kept;
+    }
+
+    private void addAnt(int id, int home, int current, int previous, boolean carrying) {
+        if (antCount == antIds.length) {
+            int capacity = 2 * antCount;
+            antIds = Arrays.copyOf(antIds, capacity);
+            antHomes = Arrays.copyOf(antHomes, capacity);
+            antCurrent = Arrays.copyOf(antCurrent, capacity);
+            antPrevious = Arrays.copyOf(antPrevious, capacity);
+            antCarrying = Arrays.copyOf(antCarrying, capacity);
+        }
+        antIds[antCount] = id;
+        antHomes[antCount] = home;
+        antCurrent[antCount] = current;
+        antPrevious[antCount] = previous;
+        antCarrying[antCount] = carrying;
+        antCount = antCount + 1;
+    }
+
+    private void copyAnt(int from, int to) {
+        if (from != to) {
+            antIds[to] = antIds[from];
+            antHomes[to] = antHomes[from];
+            antCurrent[to] = antCurrent[from];
+            antPrevious[to] = antPrevious[from];
+            antCarrying[to] = antCarrying[from];
+        }
+    }
+
+    /**
+     * Puts the ants back in the order of their numbers after ants arrived.
+     */
+    private void sortAnts() {
+        long[] keys = new long[antCount];
+        for (int a = 0; a < antCount; a = a + 1) {
+            keys[a] = ((long) antIds[a] << 32) | a;
+        }
+        Arrays.sort(keys);
+        int[] ids = new int[antIds.length];
+        int[] homes = new int[antIds.length];
+        int[] current = new int[antIds.length];
+        int[] previous = new int[antIds.length];
+        boolean[] carrying = new boolean[antIds.length];
+        for (int a = 0; a < antCount; a = a + 1) {
+            int from = (int) keys[a];
+            ids[a] = antIds[from];
+            homes[a] = antHomes[from];
+            current[a] = antCurrent[from];
+            previous[a] = antPrevious[from];
+            carrying[a] = antCarrying[from];
+        }
+        antIds = ids;
+        antHomes = homes;
+        antCurrent = current;
+        antPrevious = previous;
+        antCarrying = carrying;
+    }
+
+    /**
+     * Returns the direction of the tile a Node is in, seen from this tile, or -1
+     * if it is in this tile. Only nodes next to this tile are asked for.
+     */
+    private int directionOf(int node) {
+        int i = node / depth;
+        int j = node % depth;
+        if (i < x0) {
+            return NORTH;
+        }
+        if (i >= x1) {
+            return SOUTH;
+        }
+        if (j < y0) {
+            return WEST;
+        }
+        if (j >= y1) {
+            return EAST;
+        }
+        return -1;
+    }
+
+    private boolean isLocal(int node) {
+        return directionOf(node) < 0;
+    }
+
+    private int local(int node) {
+        return (node / depth - x0) * columns + (node % depth - y0);
+    }
+
+    /**
+     * Returns where the Edge going down or right from a Node is kept. The
+     * arrays have a ring of one row and column around the tile, for the edges
+     * coming in from the tiles above and to the left.
+     */
+    private int ring(int i, int j) {
+        return (i - x0 + 1) * stride + (j - y0 + 1);
+    }
+
+    /**
+     * Returns the number of the colony at a Node, or -1 if there is none.
+     */
+    private int colonyIndex(int node) {
+        int k = Arrays.binarySearch(sortedColonyNodes, node);
+        return k < 0 ? -1 : sortedColonies[k];
+    }
+
+    /**
+     * The raises and ants going to one neighbouring tile during a tick.
+     */
+    private static class Outbox {
+        private int[] raises = new int[48];
+        private int raiseCount;
+        private int[] ants = new int[80];
+        private int antCount;
+
+        void addRaise(int type, int i, int j) {
+            if (3 * raiseCount + 3 > raises.length) {
+                raises = Arrays.copyOf(raises, 2 * raises.length);
+            }
+            raises[3 * raiseCount] = type;
+            raises[3 * raiseCount + 1] = i;
+            raises[3 * raiseCount + 2] = j;
+            raiseCount = raiseCount + 1;
+        }
+
+        void addAnt(int id, int home, int current, int previous, boolean carrying) {
+            if (5 * antCount + 5 > ants.length) {
+                ants = Arrays.copyOf(ants, 2 * ants.length);
+            }
+            ants[5 * antCount] = id;
+            ants[5 * antCount + 1] = home;
+            ants[5 * antCount + 2] = current;
+            ants[5 * antCount + 3] = previous;
+            ants[5 * antCount + 4] = carrying ? 1 : 0;
+            antCount = antCount + 1;
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            out.writeInt(raiseCount);
+            for (int k = 0; k < 3 * raiseCount; k = k + 1) {
+                out.writeInt(raises[k]);
+            }
+            out.writeInt(antCount);
+            for (int a = 0; a < antCount; a = a + 1) {
+                for (int k = 0; k < 4; k = k + 1) {
+                    out.writeInt(ants[5 * a + k]);
+                }
+                out.writeBoolean(ants[5 * a + 4] != 0);
+            }
+            out.flush();
+        }
+
+        void clear() {
+            raiseCount = 0;
+            antCount = 0;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/**
+ * A PopulationSimulator runs the same simulation as Simulator, with the ants
+ * stored in an AntPopulation instead of an array of Ant objects. Nodes and
+ * edges are handled by number, and the neighbours of a Node are read from the
+ * compressed adjacency lists of the Graph, so a tick runs through a few lists
+ * in order. Given the same Graph, ants and random numbers, both simulators
+ * make exactly the same moves.
+ *
+ * Dead ants are removed from the population; there is no Ant array for a
+ * Visualizer to show.
+ */
+public class PopulationSimulator {
+
+    private Graph graph;
+    private AntPopulation ants;
+    private int sugarCapacity;
+    private int droppedPheromones;
+    private RandomSource random;
+    private AdjacencyLists adjacency;
+    private int[] candidates;
+    private int[] candidateEdges;
+    private int[] totals;
+
+    /**
+     * Constructor creates a new simulation of the given ants, which must live on
+     * the given Graph.
+     */
+    public PopulationSimulator(Graph graph, AntPopulation ants, int sugar, int pheromones, RandomSource random) {
+        this.graph = graph;
+        this.ants = ants;
+        this.sugarCapacity = sugar;
+        this.droppedPheromones = pheromones;
+        this.random = random;
+        this.adjacency = graph.adjacency();
+        this.candidates = new int[graph.maxDegree()];
+        this.candidateEdges = new int[graph.maxDegree()];
+        this.totals = new int[graph.maxDegree()];
+    }
+
+    /**
+     * Runs the simulation for one unit of time, in the same order as
+     * Simulator.tick: the graph, then moving, dropping sugar and eating.
+     */
+    public void tick() {
+        graph.tick();
+        move();
+        dropSugar();
+        eatSugar();
+    }
+
+    /**
+     * Returns the ants of this simulation.
+     */
+    public AntPopulation ants() {
+        return ants;
+    }
+
+    /**
+     * Moves every ant. An ant that finds sugar picks it up and turns back;
+     * the others choose their next Node by pheromones. The pheromones on the
+     * Edge taken are raised, twice for a loop, as Graph.raisePheromones does
+     * between two Node instances.
+     */
+    private void move() {
+        for (int ant = 0; ant < ants.size(); ant = ant + 1) {
+            int current = ants.current(ant);
+            int previous = ants.previous(ant);
+            int next;
+            int edge;
+            if (!ants.carrying(ant) && graph.sugar(current) > 0 && !ants.isAtHome(ant)) {
+                graph.takeSugar(current);
+                ants.setCarrying(ant, true);
+                next = previous;
+                edge = graph.edgeNumber(current, previous);
+            } else {
+                int chosen = pickNextNode(current, previous);
+                next = candidates[chosen];
+                edge = candidateEdges[chosen];
+            }
+            if (edge >= 0) {
+                graph.raisePheromones(edge, droppedPheromones);
+                if (current == next) {
+                    graph.raisePheromones(edge, droppedPheromones);
+                }
+            }
+            ants.move(ant, next);
+        }
+    }
+
+    /**
+     * Chooses the next Node from the given one, just as Simulator does: not the
+     * previous Node unless it is the only neighbour, and otherwise with a
+     * probability proportional to the pheromones on the Edge plus one. Returns
+     * the position of the choice in the candidate buffers.
+     */
+    private int pickNextNode(int current, int previous) {
+        int start = adjacency.offset(current);
+        int end = adjacency.offset(current + 1);
+        boolean skipPrevious = current != previous && end - start != 1;
+        int count = 0;
+        int totalPheromones = 0;
+        for (int k = start; k < end; k = k + 1) {
+            int neighbour = adjacency.neighbour(k);
+            if (!skipPrevious || neighbour != previous) {
+                int edge = adjacency.edge(k);
+                totalPheromones += graph.pheromoneLevel(edge) + 1;
+                candidates[count] = neighbour;
+                candidateEdges[count] = edge;
+                totals[count] = totalPheromones;
+                count = count + 1;
+            }
+        }
+        if (count == 0) {
+            throw new RuntimeException(
+                    String.format("Graph has no adjacent node for current node: %s", graph.node(current)));
+        }
+        if (count == 1) {
+            return 0;
+        }
+        int randomNumber = random.randomInt(totalPheromones);
+        for (int i = 0; i < count - 1; i = i + 1) {
+            if (randomNumber < totals[i]) {
+                return i;
+            }
+        }
+        return count - 1;
+    }
+
+    /**
+     * Ants that are home with sugar drop it into their Colony.
+     */
+    private void dropSugar() {
+        for (int ant = 0; ant < ants.size(); ant = ant + 1) {
+            if (ants.isAtHome(ant) && ants.carrying(ant)) {
+                Colony home = (Colony) graph.node(ants.home(ant));
+                ants.setCarrying(ant, false);
+                home.topUp(home.sugar() + sugarCapacity);
+            }
+        }
+    }
+
+    /**
+     * Ants that are home eat one unit of sugar from their Colony, or die if it
+     * has none. Dead ants are removed, keeping the order of the others.
+     */
+    private void eatSugar() {
+        int kept = 0;
+        for (int ant = 0; ant < ants.size(); ant = ant + 1) {
+            boolean alive = true;
+            if (ants.isAtHome(ant)) {
+                Colony home = (Colony) graph.node(ants.home(ant));
+                alive = home.tryConsume();
+            }
+            if (alive) {
+                if (kept != ant) {
+                    ants.copy(ant, kept);
+                }
+                kept = kept + 1;
+            }
+        }
+        ants.truncate(kept);
+    }
+}
@@ -0,0 +1,34 @@
+/**
+ * A RandomSource provides the random numbers of a simulation. Graph and
+ * Simulator draw from the source they are given instead of calling RandomUtils
+ * directly, so that a simulation can be run with its own seeded stream, and so
+ * that parallel workers can each be given a stream of their own.
+ */
+public interface RandomSource {
+
+    /**
+     * Returns true with the given probability.
+     */
+    boolean coinFlip(double probability);
+
+    /**
+     * Returns a random number between 0 (inclusive) and the bound (exclusive).
+     */
+    int randomInt(int bound);
+
+    /**
+     * Returns a random number between 0 (inclusive) and 1 (exclusive).
+     */
+    double randomDouble();
+
+    /**
+     * Returns a random number from a Poisson distribution with the given mean.
+     */
+    int randomPoisson(double mean);
+
+    /**
+     * Returns a new source whose numbers are independent of this one. The new
+     * source can be used on another thread without sharing any state.
+     */
+    RandomSource split();
+}
@@ -0,0 +1,40 @@
+/**
+ * This RandomSource draws from the static methods of RandomUtils, as the
+ * simulation has always done. It is the default source of Graph, Simulator and
+ * RunSimulation.
+ */
+public class RandomUtilsSource implements RandomSource {
+
+    @Override
+    public boolean coinFlip(double probability) {
+        return RandomUtils.coinFlip(probability);
+    }
+
+    @Override
+    public int randomInt(int bound) {
+        return RandomUtils.randomInt(bound);
+    }
+
+    /**
+     * RandomUtils draws no doubles, so the 53 bits are made of two random ints.
+     */
+    @Override
+    public double randomDouble() {
+        return (RandomUtils.randomInt(1 << 26) * (double) (1 << 27) + RandomUtils.randomInt(1 << 27)) * 0x1.0p-53;
+    }
+
+    @Override
+    public int randomPoisson(double mean) {
+        return RandomUtils.randomPoisson(mean);
+    }
+
+    /**
+     * RandomUtils has one shared generator, so the new source is a seeded stream
+     * whose seed is drawn from RandomUtils.
+     */
+    @Override
+    public RandomSource split() {
+        long seed = ((long) RandomUtils.randomInt(Integer.MAX_VALUE) << 31) ^ RandomUtils.randomInt(Integer.MAX_VALUE);
+        return new SeededRandomSource(seed);
+    }
+}
@@ -0,0 +1,142 @@
+/**
+ * This RandomSource is a SplitMix64 stream created from a seed, computed the same
+ * way as java.util.SplittableRandom, so it gives exactly the same numbers. The
+ * same seed always gives the same numbers, and split() gives independent streams
+ * for parallel workers. Unlike SplittableRandom, the state of the stream can be
+ * read and set again, so a simulation can be saved and resumed.
+ */
+public class SeededRandomSource implements RandomSource {
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    /*
+     * Largest mean drawn in one go by randomPoisson. Above it, Math.exp(-mean)
+     * comes too close to zero, so the mean is split into parts of at most this
+     * size and the draws are added up.
+     */
+    private static final double POISSON_STEP = 500.0;
+
+    private long seed;
+    private long gamma;
+
+    /**
+     * Constructor creates a new stream from the given seed.
+     */
+    public SeededRandomSource(long seed) {
+        this(seed, GOLDEN_GAMMA);
+    }
+
+    private SeededRandomSource(long seed, long gamma) {
+        this.seed = seed;
+        this.gamma = gamma;
+    }
+
+    @Override
+    public boolean coinFlip(double probability) {
+        return randomDouble() < probability;
+    }
+
+    /**
+     * Draws without bias: values from the uneven end of the int range are
+     * rejected and drawn again.
+     */
+    @Override
+    public int randomInt(int bound) {
+        if (bound <= 0) {
+            throw new IllegalArgumentException("bound must be positive");
+        }
+        int r = mix32(nextSeed());
+        int m = bound - 1;
+        if ((bound & m) == 0) {
+            return r & m;
+        }
+        for (int u = r >>> 1; u + m - (r = u % bound) < 0; u = mix32(nextSeed()) >>> 1) {
+            // draw again
+        }
+        return r;
+    }
+
+    /**
+     * Uses Knuth's method of multiplying uniform numbers until the product falls
+     * below exp(-mean). A sum of Poisson numbers is again a Poisson number, which
+     * is how large means are handled.
+     */
+    @Override
+    public int randomPoisson(double mean) {
+        int total = 0;
+        double left = mean;
+        while (left > 0) {
+            double step = Math.min(left, POISSON_STEP);
+            double limit = Math.exp(-step);
+            double product = randomDouble();
+            while (product > limit) {
+                total = total + 1;
+                product = product * randomDouble();
+            }
+            left = left - step;
+        }
+        return total;
+    }
+
+    @Override
+    public RandomSource split() {
+        return new SeededRandomSource(mix64(nextSeed()), mixGamma(nextSeed()));
+    }
+
+    /**
+     * Returns the state of the stream: its seed and its gamma.
+     */
+    public long[] state() {
+        return new long[] { seed, gamma };
+    }
+
+    /**
+     * Sets the stream back to a state returned by state().
+     */
+    public void setState(long[] state) {
+        this.seed = state[0];
+        this.gamma = state[1];
+    }
+
+    /**
+     * Restarts the stream from a seed and two more numbers, such as a tick and
+     * the number of an ant, so that every combination of them has a stream of
+     * its own without creating a new object.
+     */
+    public void reseed(long seed, long first, long second) {
+        this.seed = mix64(mix64(mix64(seed) + first) + second);
+        this.gamma = GOLDEN_GAMMA;
+    }
+
+    @Override
+    public double randomDouble() {
+        return (mix64(nextSeed()) >>> 11) * 0x1.0p-53;
+    }
+
+    private long nextSeed() {
+        seed = seed + gamma;
+        return seed;
+    }
+
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private static int mix32(long z) {
+        z = (z ^ (z >>> 33)) * 0x62a9d9ed799705f5L;
+        return (int) (((z ^ (z >>> 28)) * 0xcb24d0a5c88c35b3L) >>> 32);
+    }
+
+    /**
+     * Turns a number into a gamma for a new stream: odd, and with enough bit
+     * changes to mix well.
+     */
+    private static long mixGamma(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        z = (z ^ (z >>> 33)) | 1L;
+        int n = Long.bitCount(z ^ (z >>> 1));
+        return (n < 24) ? z ^ 0xaaaaaaaaaaaaaaaaL : z;
+    }
+}
@@ -0,0 +1,208 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * A SimulationCheckpoint is a copy of everything that changes while a simulation
+ * runs: the number of ticks run, the pheromones on every Edge, the sugar on
+ * every Node (colonies included), the home, current node, previous node and
+ * load of every Ant, and the state of every random stream. Nodes are stored by
+ * their number in the Graph, so a checkpoint can be restored into a new
+ * simulation built from the same settings, which then continues exactly as the
+ * saved one would have.
+ *
+ * A checkpoint owns its arrays and never changes after it is taken, so it can
+ * be written to a file on another thread while the simulation goes on. The
+ * file is a sequence of big-endian numbers:
+ *
+ * magic, version, ticks, node count, edge count, ant count, stream count, the
+ * pheromone levels, the sugar amounts, for every ant its home, current and
+ * previous node (-1 for none; a home of -1 marks a dead ant) and whether it
+ * carries sugar, and the seed and gamma of every stream.
+ */
+public class SimulationCheckpoint {
+    private static final int MAGIC = 0x43544E41; // "ANTC"
+    private static final int VERSION = 1;
+
+    private long ticks;
+    private int[] pheromones;
+    private int[] sugar;
+    private int[] antHomes;
+    private int[] antCurrent;
+    private int[] antPrevious;
+    private boolean[] antCarrying;
+    private long[][] randomStates;
+
+    /**
+     * Constructor creates a checkpoint from the given state. The arrays are kept,
+     * not copied.
+     */
+    public SimulationCheckpoint(long ticks, int[] pheromones, int[] sugar, int[] antHomes, int[] antCurrent,
+            int[] antPrevious, boolean[] antCarrying, long[][] randomStates) {
+        this.ticks = ticks;
+        this.pheromones = pheromones;
+        this.sugar = sugar;
+        this.antHomes = antHomes;
+        this.antCurrent = antCurrent;
+        this.antPrevious = antPrevious;
+        this.antCarrying = antCarrying;
+        this.randomStates = randomStates;
+    }
+
+    /**
+     * Reads a checkpoint from the file with the given name.
+     */
+    public static SimulationCheckpoint read(String filename) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(filename), 1 << 16));
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new RuntimeException("Not a checkpoint file");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new RuntimeException("Unsupported checkpoint version " + version);
+            }
+            long ticks = in.readLong();
+            int nodeCount = in.readInt();
+            int edgeCount = in.readInt();
+            int antCount = in.readInt();
+            int streamCount = in.readInt();
+            int[] pheromones = readInts(in, edgeCount);
+            int[] sugar = readInts(in, nodeCount);
+            int[] antHomes = new int[antCount];
+            int[] antCurrent = new int[antCount];
+            int[] antPrevious = new int[antCount];
+            boolean[] antCarrying = new boolean[antCount];
+            for (int i = 0; i < antCount; i = i + 1) {
+                antHomes[i] = in.readInt();
+                antCurrent[i] = in.readInt();
+                antPrevious[i] = in.readInt();
+                antCarrying[i] = in.readBoolean();
+            }
+            long[][] randomStates = new long[streamCount][];
+            for (int i = 0; i < streamCount; i = i + 1) {
+                randomStates[i] = new long[] { in.readLong(), in.readLong() };
+            }
+            return new SimulationCheckpoint(ticks, pheromones, sugar, antHomes, antCurrent, antPrevious, antCarrying,
+                    randomStates);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Writes this checkpoint to the file with the given name. It is first
+     * written next to it and then moved in place, so the file always holds a
+     * complete checkpoint, even if writing is interrupted.
+     */
+    public void write(String filename) throws IOException {
+        Path path = Paths.get(filename);
+        Path partial = Paths.get(filename + ".partial");
+        DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(partial.toFile()), 1 << 16));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(ticks);
+            out.writeInt(sugar.length);
+            out.writeInt(pheromones.length);
+            out.writeInt(antHomes.length);
+            out.writeInt(randomStates.length);
+            writeInts(out, pheromones);
+            writeInts(out, sugar);
+            for (int i = 0; i < antHomes.length; i = i + 1) {
+                out.writeInt(antHomes[i]);
+                out.writeInt(antCurrent[i]);
+                out.writeInt(antPrevious[i]);
+                out.writeBoolean(antCarrying[i]);
+            }
+            for (long[] state : randomStates) {
+                out.writeLong(state[0]);
+                out.writeLong(state[1]);
+            }
+        } finally {
+            out.close();
+        }
+        Files.move(partial, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Returns the number of ticks run when the checkpoint was taken.
+     */
+    public long ticks() {
+        return ticks;
+    }
+
+    /**
+     * Returns the pheromone level of every Edge, by Edge number.
+     */
+    public int[] pheromones() {
+        return pheromones;
+    }
+
+    /**
+     * Returns the sugar on every Node, by Node number.
+     */
+    public int[] sugar() {
+        return sugar;
+    }
+
+    /**
+     * Returns the number of the home Colony of every Ant, or -1 for a dead Ant.
+     */
+    public int[] antHomes() {
+        return antHomes;
+    }
+
+    /**
+     * Returns the number of the Node every Ant is on.
+     */
+    public int[] antCurrent() {
+        return antCurrent;
+    }
+
+    /**
+     * Returns the number of the Node every Ant came from, or -1 if it has not
+     * moved yet.
+     */
+    public int[] antPrevious() {
+        return antPrevious;
+    }
+
+    /**
+     * Returns whether every Ant carries sugar.
+     */
+    public boolean[] antCarrying() {
+        return antCarrying;
+    }
+
+    /**
+     * Returns the state of every random stream, in the order the simulation
+     * listed them.
+     */
+    public long[][] randomStates() {
+        return randomStates;
+    }
+
+    private static int[] readInts(DataInputStream in, int length) throws IOException {
+        int[] values = new int[length];
+        for (int i = 0; i < length; i = i + 1) {
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+}
@@ -0,0 +1,262 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * SimulationMetrics counts what a running simulation does: ticks, ant moves,
+ * sugar picked up and delivered, and ants that starved. The Simulator counts
+ * these in plain fields during a tick and adds them here once per tick, so the
+ * cost per ant is a field increment. Without metrics the Simulator skips that
+ * single call.
+ *
+ * The pheromone mass and the live ants per Colony are not counted but computed
+ * when they are read, from the Graph and the ants array. They may then mix
+ * values from two ticks, which is fine for monitoring. The sugar on the nodes
+ * and in the colonies is read from the running totals the Graph keeps.
+ *
+ * The metrics can be shown through JMX with register(), and written to a CSV
+ * file at a fixed interval with startCsvDump().
+ */
+public class SimulationMetrics implements SimulationMetricsMBean {
+
+    private Graph graph;
+    private Colony[] colonies;
+    private Ant[] ants;
+    private long startNanos = System.nanoTime();
+    private AtomicLong ticks = new AtomicLong();
+    private AtomicLong moves = new AtomicLong();
+    private AtomicLong sugarPickedUp = new AtomicLong();
+    private AtomicLong sugarDelivered = new AtomicLong();
+    private AtomicLong starvationDeaths = new AtomicLong();
+    private ObjectName name;
+    private ScheduledExecutorService dumper;
+    private PrintWriter csv;
+    private long lastDumpNanos;
+    private long lastDumpTicks;
+    private long lastDumpMoves;
+
+    /**
+     * Constructor creates metrics for the simulation of the given ants on the
+     * given Graph. The ants array is the one given to the Simulator.
+     */
+    public SimulationMetrics(Graph graph, Colony[] colonies, Ant[] ants) {
+        this.graph = graph;
+        this.colonies = colonies;
+        this.ants = ants;
+    }
+
+    /**
+     * Adds the counts of one tick. Called by the Simulator at the end of every
+     * tick.
+     */
+    public void recordTick(int moves, int pickedUp, int delivered, int starved) {
+        this.ticks.incrementAndGet();
+        this.moves.addAndGet(moves);
+        this.sugarPickedUp.addAndGet(pickedUp);
+        this.sugarDelivered.addAndGet(delivered);
+        this.starvationDeaths.addAndGet(starved);
+    }
+
+    @Override
+    public long getTicks() {
+        return ticks.get();
+    }
+
+    /**
+     * Returns the average number of ticks per second since the metrics were
+     * created.
+     */
+    @Override
+    public double getTicksPerSecond() {
+        return ticks.get() / secondsSince(startNanos);
+    }
+
+    @Override
+    public long getMoves() {
+        return moves.get();
+    }
+
+    /**
+     * Returns the average number of ant moves per second since the metrics were
+     * created.
+     */
+    @Override
+    public double getMovesPerSecond() {
+        return moves.get() / secondsSince(startNanos);
+    }
+
+    @Override
+    public long getSugarPickedUp() {
+        return sugarPickedUp.get();
+    }
+
+    @Override
+    public long getSugarDelivered() {
+        return sugarDelivered.get();
+    }
+
+    @Override
+    public long getStarvationDeaths() {
+        return starvationDeaths.get();
+    }
+
+    /**
+     * Returns the sum of the pheromones on all edges, computed when called.
+     */
+    @Override
+    public long getPheromoneMass() {
+        long mass = 0;
+        for (int e = 0; e < graph.edgeCount(); e = e + 1) {
+            mass = mass + graph.pheromoneLevel(e);
+        }
+        return mass;
+    }
+
+    /**
+     * Returns the sugar on all nodes that are not colonies.
+     */
+    @Override
+    public long getNodeSugar() {
+        return graph.nodeSugar();
+    }
+
+    /**
+     * Returns the sugar stock of all colonies.
+     */
+    @Override
+    public long getColonySugar() {
+        return graph.colonySugar();
+    }
+
+    /**
+     * Returns the number of nodes, other than colonies, that hold sugar.
+     */
+    @Override
+    public int getSugarNodes() {
+        return graph.sugarNodeCount();
+    }
+
+    /**
+     * Returns the number of live ants of every Colony, in the order of the
+     * colonies array, computed when called.
+     */
+    @Override
+    public int[] getLiveAntsPerColony() {
+        int[] alive = new int[colonies.length];
+        for (Ant ant : ants) {
+            if (ant != null) {
+                for (int c = 0; c < colonies.length; c = c + 1) {
+                    if (ant.home() == colonies[c]) {
+                        alive[c] = alive[c] + 1;
+                    }
+                }
+            }
+        }
+        return alive;
+    }
+
+    /**
+     * Shows these metrics through JMX, under the given name, for example
+     * "AntSimulation:type=SimulationMetrics,name=run1".
+     */
+    public void register(String objectName) {
+        try {
+            name = new ObjectName(objectName);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+        } catch (JMException e) {
+            throw new RuntimeException("Could not register metrics as " + objectName, e);
+        }
+    }
+
+    /**
+     * Starts writing a line of metrics to a CSV file at the given interval, on a
+     * background thread. The rates on a line are those since the line before.
+     */
+    public void startCsvDump(String filename, long intervalMillis) throws IOException {
+        csv = new PrintWriter(new FileWriter(filename));
+        StringBuilder header = new StringBuilder(
+                "seconds,ticks,ticksPerSecond,moves,movesPerSecond,sugarPickedUp,sugarDelivered,"
+                        + "starvationDeaths,pheromoneMass,nodeSugar,colonySugar,sugarNodes");
+        for (int c = 0; c < colonies.length; c = c + 1) {
+            header.append(",colony").append(c + 1).append(".antsAlive");
+        }
+        csv.println(header);
+        csv.flush();
+        lastDumpNanos = startNanos;
+        dumper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-csv");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dumper.scheduleAtFixedRate(this::dumpCsvLine, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the CSV dump after writing a last line, and removes the metrics from
+     * JMX.
+     */
+    public void close() {
+        if (dumper != null) {
+            dumper.shutdown();
+            try {
+                dumper.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            dumpCsvLine();
+            csv.close();
+            dumper = null;
+        }
+        if (name != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+            } catch (JMException e) {
+                throw new RuntimeException("Could not unregister metrics " + name, e);
+            }
+            name = null;
+        }
+    }
+
+    /**
+     * Writes one line of the CSV dump.
+     */
+    private synchronized void dumpCsvLine() {
+        long now = System.nanoTime();
+        long ticks = this.ticks.get();
+        long moves = this.moves.get();
+        double interval = Math.max(now - lastDumpNanos, 1) / 1e9;
+        StringBuilder line = new StringBuilder();
+        line.append(String.format(Locale.ROOT, "%.3f", secondsSince(startNanos)));
+        line.append(',').append(ticks);
+        line.append(',').append(String.format(Locale.ROOT, "%.1f", (ticks - lastDumpTicks) / interval));
+        line.append(',').append(moves);
+        line.append(',').append(String.format(Locale.ROOT, "%.1f", (moves - lastDumpMoves) / interval));
+        line.append(',').append(sugarPickedUp.get());
+        line.append(',').append(sugarDelivered.get());
+        line.append(',').append(starvationDeaths.get());
+        line.append(',').append(getPheromoneMass());
+        line.append(',').append(getNodeSugar());
+        line.append(',').append(getColonySugar());
+        line.append(',').append(getSugarNodes());
+        for (int alive : getLiveAntsPerColony()) {
+            line.append(',').append(alive);
+        }
+        csv.println(line);
+        csv.flush();
+        lastDumpNanos = now;
+        lastDumpTicks = ticks;
+        lastDumpMoves = moves;
+    }
+
+    private static double secondsSince(long nanos) {
+        return Math.max(System.nanoTime() - nanos, 1) / 1e9;
+    }
+}
@@ -0,0 +1,30 @@
+/**
+ * The management interface of SimulationMetrics, as shown by JMX clients such
+ * as jconsole.
+ */
+public interface SimulationMetricsMBean {
+
+    long getTicks();
+
+    double getTicksPerSecond();
+
+    long getMoves();
+
+    double getMovesPerSecond();
+
+    long getSugarPickedUp();
+
+    long getSugarDelivered();
+
+    long getStarvationDeaths();
+
+    long getPheromoneMass();
+
+    long getNodeSugar();
+
+    long getColonySugar();
+
+    int getSugarNodes();
+
+    int[] getLiveAntsPerColony();
+}
@@ -1,3 +1,11 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
 /**
  * Instances of class Simulator equates to the given parameters and states of a
  * simulation. It basically sets up and runs this simulation.
@@ -8,15 +16,44 @@ public class Simulator {
     private Ant[] ants;
     private int sugarCapacity;
     private int droppedPheromones;
+    private RandomSource random;
+    private MoveBuffer buffer;
+    private ForkJoinPool pool;
+    private Node[] nextNodes;
+    private int[] nextEdges;
+    private List<Callable<Void>> choiceTasks;
+    private List<Callable<Void>> moveTasks;
+    private List<RandomSource> chunkRandoms = new ArrayList<>();
+    private long ticks;
+    private SimulationMetrics metrics;
+    private int movesThisTick;
+    private int pickupsThisTick;
+    private int deliveriesThisTick;
+    private int deathsThisTick;
+    private int[] live;
+    private int liveCount;
+    private int[] deaths;
+    private int deathCount;
 
     /**
      * Constructor creates a new simulation with the related parameters.
      */
     public Simulator(Graph graph, Ant[] ants, int sugar, int pheromones) {
+	this(graph, ants, sugar, pheromones, new RandomUtilsSource());
+    }
+
+    /**
+     * Creates a new simulation that draws its random numbers from the given
+     * RandomSource.
+     */
+    public Simulator(Graph graph, Ant[] ants, int sugar, int pheromones, RandomSource random) {
 	this.graph = graph;
 	this.ants = ants;
 	this.sugarCapacity = sugar;
 	this.droppedPheromones = pheromones;
+	this.random = random;
+	this.buffer = new MoveBuffer(graph.maxDegree());
+	indexLiveAnts();
     }
 
     /**
@@ -30,9 +67,235 @@ public class Simulator {
      */
     public void tick() {
 	graph.tick();
-	move();
+	if (pool == null) {
+	    move();
+	} else {
+	    moveInParallel();
+	}
 	dropSugar();
 	eatSugar();
+	ticks = ticks + 1;
+	if (metrics != null) {
+	    metrics.recordTick(movesThisTick, pickupsThisTick, deliveriesThisTick, deathsThisTick);
+	}
+	movesThisTick = 0;
+	pickupsThisTick = 0;
+	deliveriesThisTick = 0;
+	deathsThisTick = 0;
+    }
+
+    /**
+     * Makes every later tick add its counts to the given metrics, or stops
+     * counting when given null.
+     */
+    public void setMetrics(SimulationMetrics metrics) {
+	this.metrics = metrics;
+    }
+
+    /**
+     * Stops the threads of a parallel tick, which moves the ants one by one from
+     * then on. Call it when the simulation is done.
+     */
+    public void close() {
+	if (pool != null) {
+	    pool.shutdown();
+	    pool = null;
+	}
+    }
+
+    /**
+     * Returns the number of ticks this simulation has run, counting the ticks
+     * before a restored checkpoint.
+     */
+    public long ticks() {
+	return ticks;
+    }
+
+    /**
+     * Makes later ticks move the ants on the given number of threads. The live
+     * ants are split into one chunk per thread on every tick, and each chunk draws its random numbers
+     * from its own stream, split from the simulation's RandomSource here. Each
+     * chunk also gets its own buffer for choosing next nodes. With a
+     * SeededRandomSource, the same seed and number of threads therefore
+     * always give the same simulation. Fewer than two threads switches back to
+     * moving the ants one by one. The threads of an earlier call are stopped.
+     */
+    public void useParallelTick(int threads) {
+	close();
+	chunkRandoms = new ArrayList<>();
+	if (threads < 2) {
+	    return;
+	}
+	pool = new ForkJoinPool(threads);
+	nextNodes = new Node[ants.length];
+	nextEdges = new int[ants.length];
+	choiceTasks = new ArrayList<>(threads);
+	moveTasks = new ArrayList<>(threads);
+	for (int chunk = 0; chunk < threads; chunk = chunk + 1) {
+	    int chunkNumber = chunk;
+	    RandomSource chunkRandom = random.split();
+	    chunkRandoms.add(chunkRandom);
+	    MoveBuffer chunkBuffer = new MoveBuffer(graph.maxDegree());
+	    choiceTasks.add(() -> {
+		chooseNextNodes(chunkStart(chunkNumber, threads), chunkStart(chunkNumber + 1, threads), chunkRandom,
+			chunkBuffer);
+		return null;
+	    });
+	    moveTasks.add(() -> {
+		moveChosen(chunkStart(chunkNumber, threads), chunkStart(chunkNumber + 1, threads), true);
+		return null;
+	    });
+	}
+    }
+
+    /**
+     * Takes a checkpoint of this simulation between two ticks. Only the state is
+     * copied here; writing the checkpoint to a file can then happen on another
+     * thread while the simulation goes on. Every random stream of the simulation
+     * must be a SeededRandomSource, since other streams cannot be saved.
+     */
+    public SimulationCheckpoint checkpoint() {
+	int[] pheromones = new int[graph.edgeCount()];
+	for (int e = 0; e < pheromones.length; e = e + 1) {
+	    pheromones[e] = graph.pheromoneLevel(e);
+	}
+	int[] sugar = new int[graph.nodeCount()];
+	for (int n = 0; n < sugar.length; n = n + 1) {
+	    sugar[n] = graph.sugar(n);
+	}
+	int[] antHomes = new int[ants.length];
+	int[] antCurrent = new int[ants.length];
+	int[] antPrevious = new int[ants.length];
+	boolean[] antCarrying = new boolean[ants.length];
+	for (int i = 0; i < ants.length; i = i + 1) {
+	    Ant ant = ants[i];
+	    if (ant == null) {
+		antHomes[i] = -1;
+		antCurrent[i] = -1;
+		antPrevious[i] = -1;
+	    } else {
+		antHomes[i] = graph.nodeNumber(ant.home());
+		antCurrent[i] = graph.nodeNumber(ant.current());
+		antPrevious[i] = ant.previous() == null ? -1 : graph.nodeNumber(ant.previous());
+		antCarrying[i] = ant.carrying();
+	    }
+	}
+	List<RandomSource> streams = randomSources();
+	long[][] randomStates = new long[streams.size()][];
+	for (int i = 0; i < randomStates.length; i = i + 1) {
+	    randomStates[i] = seeded(streams.get(i)).state();
+	}
+	return new SimulationCheckpoint(ticks, pheromones, sugar, antHomes, antCurrent, antPrevious, antCarrying,
+		randomStates);
+    }
+
+    /**
+     * Sets this simulation to the state of a checkpoint. The simulation must be
+     * built from the same settings as the one the checkpoint was taken from,
+     * including its number of threads and seed, which decides where the colonies
+     * are. Ants are replaced by new ones in the same
+     * array, so a Visualizer of the simulation shows the restored ants.
+     */
+    public void restore(SimulationCheckpoint checkpoint) {
+	List<RandomSource> streams = randomSources();
+	if (checkpoint.pheromones().length != graph.edgeCount() || checkpoint.sugar().length != graph.nodeCount()
+		|| checkpoint.antHomes().length != ants.length || checkpoint.randomStates().length != streams.size()) {
+	    throw new IllegalArgumentException("Checkpoint does not fit this simulation");
+	}
+	for (int home : checkpoint.antHomes()) {
+	    if (home >= graph.nodeCount() || home >= 0 && !(graph.node(home) instanceof Colony)) {
+		throw new IllegalArgumentException(
+			"Checkpoint does not fit this simulation: ant home " + home + " is not a colony");
+	    }
+	}
+	for (int e = 0; e < graph.edgeCount(); e = e + 1) {
+	    graph.setPheromoneLevel(e, checkpoint.pheromones()[e]);
+	}
+	for (int n = 0; n < graph.nodeCount(); n = n + 1) {
+	    graph.setSugar(n, checkpoint.sugar()[n]);
+	}
+	for (int i = 0; i < ants.length; i = i + 1) {
+	    if (checkpoint.antHomes()[i] < 0) {
+		ants[i] = null;
+	    } else {
+		Ant ant = new Ant((Colony) graph.node(checkpoint.antHomes()[i]));
+		if (checkpoint.antPrevious()[i] >= 0) {
+		    ant.move(graph.node(checkpoint.antPrevious()[i]));
+		    ant.move(graph.node(checkpoint.antCurrent()[i]));
+		}
+		if (checkpoint.antCarrying()[i]) {
+		    ant.pickUpSugar();
+		}
+		ants[i] = ant;
+	    }
+	}
+	for (int i = 0; i < streams.size(); i = i + 1) {
+	    seeded(streams.get(i)).setState(checkpoint.randomStates()[i]);
+	}
+	ticks = checkpoint.ticks();
+	indexLiveAnts();
+    }
+
+    /**
+     * Returns the number of ants that are alive.
+     */
+    public int liveAntCount() {
+	return liveCount;
+    }
+
+    /**
+     * Returns the positions in the ants array of the ants that have died, in
+     * the order in which they died. Ants that were already dead when the
+     * simulation was created or restored come first, by position.
+     */
+    public int[] deaths() {
+	return Arrays.copyOf(deaths, deathCount);
+    }
+
+    /**
+     * Lists the positions of the live ants in the ants array, in order, and the
+     * positions of the dead ones as deaths.
+     */
+    private void indexLiveAnts() {
+	live = new int[ants.length];
+	deaths = new int[ants.length];
+	liveCount = 0;
+	deathCount = 0;
+	for (int i = 0; i < ants.length; i = i + 1) {
+	    if (ants[i] != null) {
+		live[liveCount] = i;
+		liveCount = liveCount + 1;
+	    } else {
+		deaths[deathCount] = i;
+		deathCount = deathCount + 1;
+	    }
+	}
+    }
+
+    /**
+     * Returns where a chunk of a parallel tick starts in the list of live ants.
+     */
+    private int chunkStart(int chunk, int threads) {
+	return (int) ((long) liveCount * chunk / threads);
+    }
+
+    /**
+     * Lists every random stream of the simulation: the one of the graph, the one
+     * of the simulation and the ones of the chunks of a parallel tick.
+     */
+    private List<RandomSource> randomSources() {
+	List<RandomSource> streams = new ArrayList<>();
+	streams.add(graph.randomSource());
+	streams.add(random);
+	streams.addAll(chunkRandoms);
+	return streams;
+    }
+
+    private static SeededRandomSource seeded(RandomSource random) {
+	if (!(random instanceof SeededRandomSource)) {
+	    throw new IllegalStateException("Checkpoints need a SeededRandomSource");
+	}
+	return (SeededRandomSource) random;
     }
 
     /**
@@ -40,8 +303,8 @@ public class Simulator {
      * dropSugar method on each Ant in ants array.
      */
     private void dropSugar() {
-	for (Ant ant : ants) {
-	    dropSugar(ant);
+	for (int k = 0; k < liveCount; k = k + 1) {
+	    dropSugar(ants[live[k]]);
 	}
     }
 
@@ -50,7 +313,8 @@ public class Simulator {
      * and then moves it.
      */
     private void move() {
-	for (Ant ant : ants) {
+	for (int k = 0; k < liveCount; k = k + 1) {
+	    Ant ant = ants[live[k]];
 	    if (ant != null) {
 		move(ant);
 	    }
@@ -58,12 +322,134 @@ public class Simulator {
     }
 
     /**
-     * Loops through ants. Decreases sugar amount by one for each Ant instance.
+     * Moves the ants in three steps. First, ants that find sugar pick it up, in
+     * the order of the ants array, just as move() would do it. Then every chunk of
+     * ants chooses the next nodes of its ants from the pheromone levels at the
+     * start of the step. Last, every chunk raises the pheromones on the edges its
+     * ants traverse and moves them. Because no pheromones change while the ants
+     * choose, the result does not depend on the order in which the threads run.
+     */
+    private void moveInParallel() {
+	for (int k = 0; k < liveCount; k = k + 1) {
+	    Ant ant = ants[live[k]];
+	    nextNodes[k] = null;
+	    if (ant != null) {
+		movesThisTick = movesThisTick + 1;
+		if (shouldPickUpSugar(ant.current(), ant)) {
+		    graph.takeSugar(ant.current());
+		    ant.pickUpSugar();
+		    pickupsThisTick = pickupsThisTick + 1;
+		    nextNodes[k] = ant.previous();
+		    nextEdges[k] = -1;
+		}
+	    }
+	}
+	runInPool(choiceTasks);
+	if (graph.hasLazyEvaporation()) {
+	    moveChosen(0, liveCount, false);
+	} else {
+	    runInPool(moveTasks);
+	}
+    }
+
+    /**
+     * Chooses the next node of every ant in a chunk that did not pick up sugar.
+     * The chunk is given by positions in the list of live ants.
+     */
+    private void chooseNextNodes(int from, int to, RandomSource random, MoveBuffer buffer) {
+	for (int k = from; k < to; k = k + 1) {
+	    Ant ant = ants[live[k]];
+	    if (ant != null && nextNodes[k] == null) {
+		int chosen = pickNextNode(ant.current(), ant.previous(), random, buffer);
+		nextNodes[k] = graph.node(buffer.candidates[chosen]);
+		nextEdges[k] = buffer.edges[chosen];
+	    }
+	}
+    }
+
+    /**
+     * Raises the pheromones on the chosen edges of a chunk and moves its ants.
+     * Lazy evaporation updates a tick stamp on every raise, so it is only done
+     * with atomic raises when the graph evaporates eagerly.
+     */
+    private void moveChosen(int from, int to, boolean concurrently) {
+	for (int k = from; k < to; k = k + 1) {
+	    Ant ant = ants[live[k]];
+	    if (ant != null) {
+		Node current = ant.current();
+		Node nextNode = nextNodes[k];
+		if (nextNode == null) {
+		    throw new RuntimeException(String.format(
+			    "Ant: %s, Graph returned null adjacent node from current node: %s", ant, current));
+		}
+		raisePheromones(current, nextNode, nextEdges[k], concurrently);
+		ant.move(nextNode);
+	    }
+	}
+    }
+
+    /**
+     * Raises the pheromones on the Edge an ant takes, twice for a loop, as
+     * Graph.raisePheromones does between two Node instances. An edge number of
+     * -1 stands for an ant that turns back with sugar, whose Edge is looked up
+     * from its two ends.
+     */
+    private void raisePheromones(Node current, Node nextNode, int edge, boolean concurrently) {
+	if (edge < 0) {
+	    if (concurrently) {
+		graph.raisePheromonesConcurrently(current, nextNode, droppedPheromones);
+	    } else {
+		graph.raisePheromones(current, nextNode, droppedPheromones);
+	    }
+	    return;
+	}
+	int times = current == nextNode ? 2 : 1;
+	for (int i = 0; i < times; i = i + 1) {
+	    if (concurrently) {
+		graph.raisePheromonesConcurrently(edge, droppedPheromones);
+	    } else {
+		graph.raisePheromones(edge, droppedPheromones);
+	    }
+	}
+    }
+
+    /**
+     * Runs the tasks in the pool and waits for all of them, passing on the first
+     * exception thrown by a task.
+     */
+    private void runInPool(List<Callable<Void>> tasks) {
+	for (Future<Void> result : pool.invokeAll(tasks)) {
+	    try {
+		result.get();
+	    } catch (ExecutionException e) {
+		throw new RuntimeException(e.getCause());
+	    } catch (InterruptedException e) {
+		Thread.currentThread().interrupt();
+		throw new RuntimeException(e);
+	    }
+	}
+    }
+
+    /**
+     * Loops through the live ants. Decreases sugar amount by one for each Ant
+     * instance. The ants that die are taken out of the list of live ants, which
+     * keeps its order, and added to the deaths; so are ants that were set to
+     * null from outside since the last tick.
      */
     private void eatSugar() {
-	for (int i = 0; i < ants.length; i = i + 1) {
+	int stillLive = 0;
+	for (int k = 0; k < liveCount; k = k + 1) {
+	    int i = live[k];
 	    eatSugar(i, ants);
+	    if (ants[i] != null) {
+		live[stillLive] = i;
+		stillLive = stillLive + 1;
+	    } else {
+		deaths[deathCount] = i;
+		deathCount = deathCount + 1;
+	    }
 	}
+	liveCount = stillLive;
     }
 
     /**
@@ -76,6 +462,7 @@ public class Simulator {
 	    if (ant.isAtHome() && ant.carrying()) {
 		ant.dropSugar();
 		home.topUp(home.sugar() + sugarCapacity);
+		deliveriesThisTick = deliveriesThisTick + 1;
 	    }
 	}
     }
@@ -83,18 +470,19 @@ public class Simulator {
     /**
      * Checks if Ant is not null or dead. Sets ant's home Colony. If home has no
      * sugar, the Ant dies or is set to null. If the home colony has sugar, one unit
-     * of sugar is subtracted from Colony.
+     * of sugar is subtracted from Colony, in the same step as the check, so the
+     * ants of a colony may eat on several threads.
      */
     public void eatSugar(int i, Ant[] ants) {
 	Ant ant = ants[i];
 	if (ant != null) {
 	    Colony home = ant.home();
 	    if (ant.isAtHome()) {
-		if (!home.hasStock()) {
+		if (!home.tryConsume()) {
 		    ants[i] = null;
+		    deathsThisTick = deathsThisTick + 1;
 		    // System.out.println(String.format("Ant: %s died from starvation", ant));
 		} else {
-		    home.consume();
 		    /*
 		     * System.out.println(String.format("Ant: %s ate sugar %d left", ant,
 		     * home.sugar()));
@@ -123,8 +511,9 @@ public class Simulator {
 	    throw new RuntimeException(
 		    String.format("Ant: %s, Graph returned null adjacent node from current node: %s", ant, current));
 	}
-	graph.raisePheromones(current, nextNode, droppedPheromones);
+	raisePheromones(current, nextNode, buffer.edge, false);
 	ant.move(nextNode);
+	movesThisTick = movesThisTick + 1;
 	/*
 	 * System.out.println(String.format("Ant %s, new pheromoneLevel: %d", ant,
 	 * graph.pheromoneLevel(current, nextNode)));
@@ -136,8 +525,10 @@ public class Simulator {
      * locations. Checks whether the current node has sugar. If so, that sugar is
      * picked up (if the Ant is not already carrying). One unit of sugar is also
      * subtracted from the node, and the Ant moves to its previous location. If
-     * there is no sugar in the current node, the findAdjacent method is called to
-     * find a new node (that is connected to the current one by an Edge).
+     * there is no sugar in the current node, the pickNextNode method is called to
+     * find a new node (that is connected to the current one by an Edge). The
+     * number of the Edge taken is left in the buffer, or -1 for an ant that turns
+     * back.
      */
     private Node findNextNode(Ant ant) {
 	Node current = ant.current();
@@ -145,12 +536,15 @@ public class Simulator {
 
 	if (shouldPickUpSugar(current, ant)) {
 	    // System.out.println(String.format("Ant: %s, is picking up sugar", ant));
-	    current.decreaseSugar();
+	    graph.takeSugar(current);
 	    ant.pickUpSugar();
+	    pickupsThisTick = pickupsThisTick + 1;
+	    buffer.edge = -1;
 	    return previous;
 	}
-	Node[] adjacent = findAdjacent(current, previous);
-	return findNextNode(adjacent, current);
+	int chosen = pickNextNode(current, previous, random, buffer);
+	buffer.edge = buffer.edges[chosen];
+	return graph.node(buffer.candidates[chosen]);
     }
 
     /**
@@ -165,112 +559,70 @@ public class Simulator {
     }
 
     /**
-     * Called by ants when trying to find a new Node to travel to. Checks the ant's
-     * current node, and finds any nodes connected to it (but not the ant's previous
-     * node).
+     * Chooses the node an Ant moves to from its current node. The ant does not go
+     * back to its previous node unless that is the only way. One pass over the
+     * neighbours collects the possible nodes and the running total of their
+     * pheromones plus one into the buffer, so no arrays are created. The
+     * candidates are kept by number together with the Edge that leads to them,
+     * so the caller raises that Edge without looking it up. If more than one
+     * node is possible, one is drawn with a probability proportional to the
+     * pheromones on its Edge plus one. Returns the position of the choice in the
+     * buffer.
      */
-    private Node[] findAdjacent(Node current, Node previous) {
-	Node[] adjacent = graph.adjacentTo(current);
-	for (int i = 0; i < adjacent.length; i = i + 1) {
-	    if (adjacent[i] == null) {
-		throw new RuntimeException(
-			String.format("Graph returned null adjacent node from current node: %s", current));
-	    }
-	}
-	if (current == previous || previous == null || adjacent.length == 1) {
-	    return adjacent;
+    private int pickNextNode(Node current, Node previous, RandomSource random, MoveBuffer buffer) {
+	int number = graph.nodeNumber(current);
+	if (number < 0) {
+	    throw new RuntimeException(String.format("Graph has no adjacent node for current node: %s", current));
 	}
-	return adjacentWithoutPrevious(adjacent, previous);
-    }
-
-    /**
-     * Checks if the node found by the findAdjacent method is one the Ant instance
-     * has visited before its current node.
-     */
-    private Node[] adjacentWithoutPrevious(Node[] adjacent, Node previous) {
-	/*
-	 * Find how many nodes are not a previous node. Hack to avoid faulty
-	 * graph.adjacentTo giving multiple of the same entry.
-	 */
-	int newLength = 0;
-	for (Node node : adjacent) {
-	    if (node != previous) {
-		newLength = newLength + 1;
+	int degree = graph.degree(number);
+	boolean skipPrevious = current != previous && previous != null && degree != 1;
+	int[] candidates = buffer.candidates;
+	int[] edges = buffer.edges;
+	int[] totals = buffer.totals;
+	int previousNumber = skipPrevious ? graph.nodeNumber(previous) : -1;
+	int count = 0;
+	int totalPheromones = 0;
+	for (int i = 0; i < degree; i = i + 1) {
+	    int adjacent = graph.neighbour(number, i);
+	    if (adjacent != previousNumber) {
+		int edge = graph.adjacentEdge(number, i);
+		totalPheromones += graph.pheromoneLevel(edge) + 1;
+		candidates[count] = adjacent;
+		edges[count] = edge;
+		totals[count] = totalPheromones;
+		count = count + 1;
 	    }
 	}
-	Node[] newAdjacent = new Node[newLength];
-	int inputIndex = 0;
-	for (Node node : adjacent) {
-	    if (node != previous) {
-		newAdjacent[inputIndex] = node;
-		inputIndex = inputIndex + 1;
-	    }
+	if (count == 0) {
+	    throw new RuntimeException(String.format("Graph has no adjacent node for current node: %s", current));
 	}
-
-	for (int i = 0; i < newAdjacent.length; i = i + 1) {
-	    if (newAdjacent[i] == null) {
-		throw new RuntimeException(String.format("Graph returned null adjacent"));
+	if (count == 1) {
+	    return 0;
+	}
+	int randomNumber = random.randomInt(totalPheromones);
+	for (int i = 0; i < count - 1; i = i + 1) {
+	    if (randomNumber < totals[i]) {
+		return i;
 	    }
 	}
-	return newAdjacent;
+	return count - 1;
     }
 
     /**
-     * Determines which node an instance of Ant should go to next on its way to its
-     * intended location. Checks for dead-ends, in which case the Ant is instructed
-     * to return to its previous Node. If more than one Edge is connected to the
-     * current Node, the decision (about which Edge instance to traverse) is
-     * calculated using the weightedProbability method – and by comparing the amount
-     * of Pheromones in each connected Edge.
+     * Scratch space for choosing a next node, big enough for the Node with the
+     * most neighbours, and the Edge chosen by the last move. Each thread that
+     * moves ants has a buffer of its own.
      */
-    private Node findNextNode(Node[] adjacent, Node current) {
-	if (adjacent.length == 1) {
-	    /*
-	     * System.out.println(String.format("Only way Moving %s -> %s", current,
-	     * adjacent[0]));
-	     */
-	    return adjacent[0];
-	}
-	int[] nodeProbabilities = new int[adjacent.length];
-	int totalPheromones = weightedProbabilities(adjacent, current, nodeProbabilities);
-	Node nextNode = pickRandomNextNode(totalPheromones, nodeProbabilities, adjacent);
-	/*
-	 * System.out.println(String.format("Random Moving %s -> %s", current,
-	 * nextNode));
-	 */
-	return nextNode;
-    }
+    private static class MoveBuffer {
+	private int[] candidates;
+	private int[] edges;
+	private int[] totals;
+	private int edge;
 
-    /**
-     * Loops through connected instances of Edge, comparing the amount of pheromones
-     * in each.
-     */
-    private int weightedProbabilities(Node[] adjacent, Node current, int[] nodeProbabilities) {
-	int totalPheromones = 0;
-	for (int i = 0; i < nodeProbabilities.length; i = i + 1) {
-	    int pheromones = graph.pheromoneLevel(current, adjacent[i]);
-	    totalPheromones += pheromones + 1;
-	    nodeProbabilities[i] = totalPheromones;
-	}
-	return totalPheromones;
-    }
-
-    /**
-     * In case of a stalemate between the pheromone amounts of two or more instances
-     * of Edge, a random Edge instance is selected for the Ant to traverse.
-     */
-    private Node pickRandomNextNode(int totalPheromones, int[] nodeProbabilities, Node[] adjacent) {
-	for (int i = 0; i < adjacent.length; i = i + 1) {
-	    if (adjacent[i] == null) {
-		throw new RuntimeException(String.format("Graph returned null adjacent"));
-	    }
-	}
-	int randomNumber = RandomUtils.randomInt(totalPheromones);
-	for (int i = 0; i < nodeProbabilities.length - 1; i = i + 1) {
-	    if (randomNumber < nodeProbabilities[i]) {
-		return adjacent[i];
-	    }
+	MoveBuffer(int size) {
+	    this.candidates = new int[size];
+	    this.edges = new int[size];
+	    this.totals = new int[size];
 	}
-	return adjacent[adjacent.length - 1];
     }
 }
\ No newline at end of file
@@ -0,0 +1,86 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+/**
+ * A TileLink is the connection between two neighbouring GridTile workers, over
+ * a socket on the loopback interface. Each tick, both ends send one message
+ * and read the one from the other end. Connecting, accepting and every read
+ * give up with a SocketTimeoutException after the timeout the link was made
+ * with, so a worker does not wait for ever on a neighbour that died or hangs.
+ */
+public class TileLink {
+    private Socket socket;
+    private DataInputStream in;
+    private DataOutputStream out;
+
+    private TileLink(Socket socket, int timeoutMillis) throws IOException {
+        this.socket = socket;
+        socket.setTcpNoDelay(true);
+        socket.setSoTimeout(timeoutMillis);
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+    }
+
+    /**
+     * Connects to the worker listening on the given port of this machine,
+     * waiting up to the timeout for it to start listening, and tells it the
+     * number of this tile.
+     */
+    public static TileLink connect(int port, int tile, int timeoutMillis) throws IOException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (true) {
+            try {
+                TileLink link = new TileLink(new Socket(InetAddress.getLoopbackAddress(), port), timeoutMillis);
+                link.out.writeInt(tile);
+                link.out.flush();
+                return link;
+            } catch (ConnectException e) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw e;
+                }
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while connecting to port " + port, interrupted);
+                }
+            }
+        }
+    }
+
+    /**
+     * Accepts the next connection to the server socket, waiting up to the
+     * timeout for it. The number of the tile that connected is then read with
+     * readTile().
+     */
+    public static TileLink accept(ServerSocket server, int timeoutMillis) throws IOException {
+        server.setSoTimeout(timeoutMillis);
+        return new TileLink(server.accept(), timeoutMillis);
+    }
+
+    /**
+     * Reads the number of the tile at the other end, as sent by connect().
+     */
+    public int readTile() throws IOException {
+        return in.readInt();
+    }
+
+    public DataInputStream in() {
+        return in;
+    }
+
+    public DataOutputStream out() {
+        return out;
+    }
+
+    public void close() throws IOException {
+        socket.close();
+    }
+}
@@ -0,0 +1,152 @@
+import java.nio.IntBuffer;
+
+/**
+ * The AdjacencyLists class stores the neighbours of every node of a graph in
+ * compressed form: the neighbours of node n, and the numbers of the edges that
+ * lead to them, are found between positions offset(n) and offset(n + 1) of two
+ * shared lists. Neighbours are listed in the order of the edges.
+ *
+ * The lists are IntBuffers, so they can be arrays on the heap or sections of a
+ * file mapped into memory (see GraphBinaryFile), and are read in place either
+ * way.
+ */
+public class AdjacencyLists {
+    private IntBuffer offsets;
+    private IntBuffer neighbours;
+    private IntBuffer edges;
+
+    /**
+     * Constructor wraps existing arrays.
+     */
+    public AdjacencyLists(int[] offsets, int[] neighbours, int[] edges) {
+        this(IntBuffer.wrap(offsets), IntBuffer.wrap(neighbours), IntBuffer.wrap(edges));
+    }
+
+    /**
+     * Constructor wraps existing buffers, as mapped from a graph file. The lists
+     * run from position 0 to the limit of each buffer.
+     */
+    public AdjacencyLists(IntBuffer offsets, IntBuffer neighbours, IntBuffer edges) {
+        this.offsets = offsets;
+        this.neighbours = neighbours;
+        this.edges = edges;
+    }
+
+    /**
+     * Builds the lists for a graph with the given number of nodes and edges
+     * between the given sources and targets. An edge from a node to itself is
+     * listed once.
+     */
+    public static AdjacencyLists build(int nodeCount, int[] sources, int[] targets) {
+        int[] offsets = new int[nodeCount + 1];
+        for (int i = 0; i < sources.length; i = i + 1) {
+            offsets[sources[i] + 1] = offsets[sources[i] + 1] + 1;
+            if (targets[i] != sources[i]) {
+                offsets[targets[i] + 1] = offsets[targets[i] + 1] + 1;
+            }
+        }
+        for (int n = 0; n < nodeCount; n = n + 1) {
+            offsets[n + 1] = offsets[n + 1] + offsets[n];
+        }
+        int[] next = new int[nodeCount];
+        System.arraycopy(offsets, 0, next, 0, nodeCount);
+        int[] neighbours = new int[offsets[nodeCount]];
+        int[] edges = new int[offsets[nodeCount]];
+        for (int i = 0; i < sources.length; i = i + 1) {
+            int source = sources[i];
+            int target = targets[i];
+            neighbours[next[source]] = target;
+            edges[next[source]] = i;
+            next[source] = next[source] + 1;
+            if (target != source) {
+                neighbours[next[target]] = source;
+                edges[next[target]] = i;
+                next[target] = next[target] + 1;
+            }
+        }
+        return new AdjacencyLists(offsets, neighbours, edges);
+    }
+
+    /**
+     * Returns the number of nodes.
+     */
+    public int nodeCount() {
+        return offsets.limit() - 1;
+    }
+
+    /**
+     * Returns the position of the first neighbour of a node; offset(nodeCount)
+     * is the total length of the lists.
+     */
+    public int offset(int node) {
+        return offsets.get(node);
+    }
+
+    /**
+     * Returns the neighbour at a position of the lists.
+     */
+    public int neighbour(int position) {
+        return neighbours.get(position);
+    }
+
+    /**
+     * Returns the number of the edge to the neighbour at a position of the
+     * lists.
+     */
+    public int edge(int position) {
+        return edges.get(position);
+    }
+
+    /**
+     * Returns the number of the first edge between two nodes, or -1 if they are
+     * not neighbours. Only the shorter of their two lists is searched.
+     */
+    public int edgeNumber(int nodeA, int nodeB) {
+        int from = nodeA;
+        int to = nodeB;
+        if (offset(nodeB + 1) - offset(nodeB) < offset(nodeA + 1) - offset(nodeA)) {
+            from = nodeB;
+            to = nodeA;
+        }
+        for (int k = offset(from); k < offset(from + 1); k = k + 1) {
+            if (neighbour(k) == to) {
+                return edge(k);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the positions of the first neighbours as an array. Lists on the
+     * heap return their own array; lists mapped from a file are copied on each
+     * call, so code that runs often should use offset() instead.
+     */
+    public int[] offsets() {
+        return toArray(offsets);
+    }
+
+    /**
+     * Returns the neighbours of all nodes, one list after the other, as an
+     * array, which is a copy for lists mapped from a file.
+     */
+    public int[] neighbours() {
+        return toArray(neighbours);
+    }
+
+    /**
+     * Returns the edge numbers belonging to the neighbours as an array, which is
+     * a copy for lists mapped from a file.
+     */
+    public int[] edges() {
+        return toArray(edges);
+    }
+
+    private static int[] toArray(IntBuffer buffer) {
+        if (buffer.hasArray() && buffer.arrayOffset() == 0 && buffer.array().length == buffer.limit()) {
+            return buffer.array();
+        }
+        int[] values = new int[buffer.limit()];
+        buffer.duplicate().position(0).get(values);
+        return values;
+    }
+}
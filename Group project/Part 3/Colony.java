@@ -1,34 +1,95 @@
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * This class represents nodes of ant colonies, extends the class Node and
  * manages the colonies' sugar stock.
+ *
+ * The stock is kept in an AtomicInteger instead of in the Node, so that ants
+ * of the same colony can drop and eat sugar on several threads without losing
+ * updates. tryConsume decides in one step whether there was sugar to eat.
+ * Every change of the stock is reported to the SugarIndex the colony is
+ * attached to.
  */
 
 public class Colony extends Node {
 
+    private final AtomicInteger stock = new AtomicInteger();
+    private SugarIndex index;
+
     /**
      * Default constructor creates a new colony with an empty sugar stock.
      */
     public Colony() {
     }
 
+    /**
+     * Reports every later change of the sugar stock to the given index. Called
+     * by the Graph the colony is placed in.
+     */
+    public void attach(SugarIndex index) {
+        this.index = index;
+    }
+
+    @Override
+    public int sugar() {
+        return stock.get();
+    }
+
+    @Override
+    public void setSugar(int amount) {
+        int before = stock.getAndSet(amount);
+        if (index != null) {
+            index.colonyChanged(before, amount);
+        }
+    }
+
+    @Override
+    public void decreaseSugar() {
+        consume();
+    }
+
     /**
      * Increases the colony's sugar stock by a given amount.
      */
     public void topUp(int sugar) {
-        setSugar(sugar() + sugar);
+        int before = stock.getAndAdd(sugar);
+        if (index != null) {
+            index.colonyChanged(before, before + sugar);
+        }
     }
 
     /**
      * Decreases the colony's sugar stock by one unit.
      */
     public void consume() {
-        decreaseSugar();
+        int after = stock.decrementAndGet();
+        if (index != null) {
+            index.colonyChanged(after + 1, after);
+        }
+    }
+
+    /**
+     * Decreases the colony's sugar stock by one unit if it is not empty, and
+     * returns whether it was. No other thread can take the same unit.
+     */
+    public boolean tryConsume() {
+        int before = stock.get();
+        while (before > 0) {
+            if (stock.compareAndSet(before, before - 1)) {
+                if (index != null) {
+                    index.colonyChanged(before, before - 1);
+                }
+                return true;
+            }
+            before = stock.get();
+        }
+        return false;
     }
 
     /**
      * Returns a non-empty sugar stock in the colony.
      */
     public boolean hasStock() {
-        return sugar() > 0;
+        return stock.get() > 0;
     }
 }
\ No newline at end of file
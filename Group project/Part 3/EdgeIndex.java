@@ -0,0 +1,114 @@
+import java.util.Arrays;
+
+/**
+ * The EdgeIndex class maps an unordered pair of node numbers to the number of
+ * the Edge connecting them. It is an open-addressing hash table on primitive
+ * keys, so looking up an Edge takes constant time and creates no objects.
+ */
+public class EdgeIndex {
+    private static final long EMPTY = -1L;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+
+    /**
+     * Constructor creates an empty index with room for the given number of edges.
+     */
+    public EdgeIndex(int expectedEdges) {
+        int capacity = 2;
+        while (capacity < expectedEdges * 2) {
+            capacity = capacity * 2;
+        }
+        this.keys = new long[capacity];
+        this.values = new int[capacity];
+        this.mask = capacity - 1;
+        Arrays.fill(keys, EMPTY);
+    }
+
+    /**
+     * Stores the edge number for the pair of nodes. Returns false (and changes
+     * nothing) if the pair is already in the index.
+     */
+    public boolean put(int nodeA, int nodeB, int edge) {
+        if (size * 2 >= keys.length) {
+            grow();
+        }
+        long key = key(nodeA, nodeB);
+        int slot = slot(key);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = edge;
+        size = size + 1;
+        return true;
+    }
+
+    /**
+     * Returns the edge number for the pair of nodes, in either order, or -1 if
+     * they are not connected.
+     */
+    public int get(int nodeA, int nodeB) {
+        long key = key(nodeA, nodeB);
+        int slot = slot(key);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the number of pairs in the index.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Packs the pair into one key, smallest node number first, so that both
+     * directions of an Edge give the same key.
+     */
+    private static long key(int nodeA, int nodeB) {
+        int low = Math.min(nodeA, nodeB);
+        int high = Math.max(nodeA, nodeB);
+        return ((long) low << 32) | (high & 0xffffffffL);
+    }
+
+    /**
+     * Spreads the bits of the key over the table.
+     */
+    private int slot(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    /**
+     * Doubles the table and re-inserts every pair.
+     */
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldValues.length * 2];
+        mask = keys.length - 1;
+        Arrays.fill(keys, EMPTY);
+        for (int i = 0; i < oldKeys.length; i = i + 1) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = slot(oldKeys[i]);
+                while (keys[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+}
@@ -1,18 +1,59 @@
-import java.io.File;
-import java.util.Scanner;
-import java.util.List;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.IntBuffer;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 /**
  * The Graph class creates and fills out a grid of Node, Edge and Colony
  * instances. Additionally, Graph handles the pheromone levels of Edge
  * instances, the amount of sugar in Node and Colony instances, as well as the
  * periodic reduction of pheromones in Edges.
+ *
+ * The sugar of every Node is kept in an array, and a Node is only created when
+ * it is asked for (see GridNode); only the colonies exist from the start. A
+ * graph read from a file finds neighbours and edges in its AdjacencyLists,
+ * which may be mapped from a GraphBinaryFile and are never copied. A grid
+ * computes them with a GridTopology. Edge instances are only created by
+ * edge().
  */
 public class Graph {
+    private static final VarHandle NODE = MethodHandles.arrayElementVarHandle(Node[].class);
+    private static final VarHandle ADJACENT = MethodHandles.arrayElementVarHandle(Node[][].class);
+    private static final Node[] NO_NODES = new Node[0];
+
+    /**
+     * The number of grid nodes in a band of rows whose sugar is drawn from one
+     * random stream when a grid is built in parallel. GridTile draws in the same
+     * bands.
+     */
+    static final int BAND_NODES = 1 << 16;
+
     private double sugarProbability;
     private int sugarAverage;
-    private Edge[] edges;
+    private SugarDistribution sugarDistribution;
+    private RandomSource random;
+    private IntBuffer sources;
+    private IntBuffer targets;
+    private Node[] nodes;
+    private GridTopology grid;
+    private int[] sugarAmounts;
+    private Map<Node, Integer> nodeNumbers;
+    private EdgeIndex edgeIndex;
+    private PheromoneStore pheromones;
+    private AdjacencyLists adjacency;
+    private boolean spawnPerNode;
+    private SugarIndex sugar;
+    private int maxDegree;
+    private volatile Node[][] adjacentArrays;
 
     /**
      * The first constructor creates a 2D array of Node and Colony instances with
@@ -20,87 +61,507 @@ public class Graph {
      * added to Nodes randomly over time.
      */
     public Graph(int width, int depth, Colony[] colonies, double sugarProbability, int sugarAverage) {
+        this(width, depth, colonies, sugarProbability, sugarAverage, new RandomUtilsSource());
+    }
+
+    /**
+     * Creates the same grid as the first constructor, drawing all random numbers
+     * from the given RandomSource.
+     */
+    public Graph(int width, int depth, Colony[] colonies, double sugarProbability, int sugarAverage,
+            RandomSource random) {
         this.sugarProbability = sugarProbability;
         this.sugarAverage = sugarAverage;
+        this.sugarDistribution = new SugarDistribution(sugarProbability, sugarAverage);
+        this.random = random;
 
-        Node[][] nodeGrid = fillingInNodesTo2dArray(width, depth);
-        insertingColoniesToMap(nodeGrid, colonies, width, depth);
-        this.edges = createEdgesBetweenNodes(width, depth, nodeGrid);
+        this.grid = new GridTopology(width, depth);
+        this.sugarAmounts = new int[grid.nodeCount()];
+        Node[] nodeLocation = new Node[grid.nodeCount()];
+        fillingInSugarToGrid();
+        insertingColoniesToMap(nodeLocation, colonies);
+        connectGrid(nodeLocation);
+    }
+
+    /**
+     * Creates a grid like the constructor above, built for size: the sugar is
+     * drawn by the given number of threads, one band of rows at a time with a
+     * random stream split from the given RandomSource for every band, and the
+     * colonies are placed on distinct random nodes without drawing a node twice.
+     * The grid only depends on the RandomSource, not on the number of threads,
+     * but differs from the one the constructor above draws from the same
+     * source.
+     */
+    public Graph(int width, int depth, Colony[] colonies, double sugarProbability, int sugarAverage,
+            RandomSource random, int threads) {
+        this.sugarProbability = sugarProbability;
+        this.sugarAverage = sugarAverage;
+        this.sugarDistribution = new SugarDistribution(sugarProbability, sugarAverage);
+        this.random = random;
+
+        this.grid = new GridTopology(width, depth);
+        if (colonies.length > grid.nodeCount()) {
+            throw new IllegalArgumentException(
+                    "Cannot place " + colonies.length + " colonies on a grid of " + grid.nodeCount() + " nodes");
+        }
+        this.sugarAmounts = new int[grid.nodeCount()];
+        Node[] nodeLocation = new Node[grid.nodeCount()];
+        fillingInSugarInBands(threads);
+        placingColoniesWithoutReplacement(nodeLocation, colonies);
+        connectGrid(nodeLocation);
     }
 
     /**
      * The second constructor creates a 2D array of Node and Colony instances from a
-     * user-specified text file, while handling possible exception that might be
-     * thrown by a malformed text file from the user.
+     * user-specified text file. A malformed file, or one that cannot be read,
+     * gives an IllegalArgumentException with the reason. A file written by
+     * GraphBinaryFile is recognised and read without parsing.
      */
     public Graph(String filename, Colony[] homes, double sugarProbability, int sugarAverage) {
+        this(filename, homes, sugarProbability, sugarAverage, new RandomUtilsSource());
+    }
+
+    /**
+     * Reads the same graph as the second constructor, drawing all random numbers
+     * from the given RandomSource.
+     */
+    public Graph(String filename, Colony[] homes, double sugarProbability, int sugarAverage, RandomSource random) {
         this.sugarProbability = sugarProbability;
         this.sugarAverage = sugarAverage;
+        this.sugarDistribution = new SugarDistribution(sugarProbability, sugarAverage);
+        this.random = random;
 
         try {
-            Scanner filescanner = new Scanner(new File(filename));
-
-            int amountOfNodes = filescanner.nextInt();
-            filescanner.nextLine();
-            Node[] nodeLocation = new Node[amountOfNodes];
-
-            String[] colonyInformation = filescanner.nextLine().trim().split(" ");
+            GraphData file;
+            if (GraphBinaryFile.isBinaryGraph(filename)) {
+                file = new GraphBinaryFile(filename);
+            } else {
+                file = new GraphFileReader(filename);
+            }
+            Node[] nodeLocation = new Node[file.nodeCount()];
+            this.sugarAmounts = new int[file.nodeCount()];
 
-            addColoniesToNodeArray(colonyInformation, nodeLocation, homes);
-            addNewNodesToEmptyIndexes(nodeLocation);
-            createEdges(filescanner, nodeLocation);
-            addSugarToNodes(nodeLocation);
-            filescanner.close();
-        } catch (Throwable t) {
-            // Use in case of debugging
-            // t.printStackTrace();
-            System.err.println("File is not well-formed, error:  " + t.getMessage());
-            System.exit(-1);
+            addColoniesToNodeArray(file.colonies(), nodeLocation, homes);
+            addSugarToNodes(file.colonies(), nodeLocation);
+            connect(nodeLocation, file.sources(), file.targets(), file.edgeIndex(), file.adjacency());
+        } catch (IOException | RuntimeException e) {
+            throw new IllegalArgumentException("File is not well-formed, error:  " + e.getMessage(), e);
         }
     }
 
+    /**
+     * Creates a graph without nodes or edges, to be connected by emptyCopy.
+     */
+    private Graph(double sugarProbability, int sugarAverage, RandomSource random) {
+        this.sugarProbability = sugarProbability;
+        this.sugarAverage = sugarAverage;
+        this.sugarDistribution = new SugarDistribution(sugarProbability, sugarAverage);
+        this.random = random;
+    }
+
     /**
      * Gets the amount of pheromones in a given Node instance.
      */
     public int pheromoneLevel(Node source, Node target) {
-        for (Edge edge : edges) {
-            if (edge.source() == source && edge.target() == target) {
-                return edge.pheromones();
-            }
-            if (edge.target() == source && edge.source() == target) {
-                return edge.pheromones();
-            }
+        int edge = edgeBetween(source, target);
+        if (edge < 0) {
+            return 0;
         }
-        return 0;
+        return pheromones.level(edge);
     }
 
     /**
      * Increases the amount of pheromones in a given Node instance.
      */
     public void raisePheromones(Node source, Node target, int amount) {
-        for (Edge edge : edges) {
-            if (edge.source() == source && edge.target() == target) {
-                edge.raisePheromones(amount);
+        int edge = edgeBetween(source, target);
+        if (edge < 0) {
+            return;
+        }
+        pheromones.raise(edge, amount);
+        // A loop matches both directions, so the old edge scan raised it twice.
+        if (source == target) {
+            pheromones.raise(edge, amount);
+        }
+    }
+
+    /**
+     * Increases the amount of pheromones between two Node instances in a way that
+     * is safe when several threads raise pheromones at once. Needs eager
+     * evaporation.
+     */
+    public void raisePheromonesConcurrently(Node source, Node target, int amount) {
+        int edge = edgeBetween(source, target);
+        if (edge < 0) {
+            return;
+        }
+        pheromones.raiseConcurrently(edge, amount);
+        if (source == target) {
+            pheromones.raiseConcurrently(edge, amount);
+        }
+    }
+
+    /**
+     * Chooses whether pheromones evaporate from every Edge on each tick, or only
+     * when an Edge is read or raised. Both give the same pheromone levels; the
+     * lazy mode makes a tick cost independent of the number of edges.
+     */
+    public void useLazyEvaporation(boolean lazy) {
+        pheromones.setLazy(lazy);
+    }
+
+    /**
+     * Returns true if pheromones only evaporate when an Edge is read or raised.
+     */
+    public boolean hasLazyEvaporation() {
+        return pheromones.isLazy();
+    }
+
+    /**
+     * Chooses whether sugar spawns on every Node that is not a Colony with
+     * probability sugarProbability on each tick, or on one end of a random Edge
+     * with that probability. A tick of the first mode costs time for every
+     * spawn, not for every Node, so the density of sugar no longer falls as the
+     * graph grows.
+     */
+    public void useSpawnPerNode(boolean perNode) {
+        spawnPerNode = perNode;
+    }
+
+    /**
+     * Returns true if sugar spawns on every Node with its own probability.
+     */
+    public boolean hasSpawnPerNode() {
+        return spawnPerNode;
+    }
+
+    /**
+     * Checks for Node instances next to the one calling this method. The array of
+     * a Node is created the first time it is asked for and returned again on
+     * later calls, so it is shared and must not be modified. A graph that is
+     * never asked keeps no arrays.
+     */
+    public Node[] adjacentTo(Node node) {
+        int number = nodeNumber(node);
+        if (number < 0) {
+            return NO_NODES;
+        }
+        Node[][] arrays = adjacentArrays;
+        if (arrays == null) {
+            synchronized (this) {
+                arrays = adjacentArrays;
+                if (arrays == null) {
+                    arrays = new Node[nodes.length][];
+                    adjacentArrays = arrays;
+                }
+            }
+        }
+        Node[] adjacent = (Node[]) ADJACENT.getAcquire(arrays, number);
+        if (adjacent == null) {
+            adjacent = adjacentNodes(number);
+            Node[] existing = (Node[]) ADJACENT.compareAndExchange(arrays, number, (Node[]) null, adjacent);
+            if (existing != null) {
+                adjacent = existing;
             }
-            if (edge.target() == source && edge.source() == target) {
-                edge.raisePheromones(amount);
+        }
+        return adjacent;
+    }
+
+    /**
+     * Returns the number of a Node in this graph, or -1 if it is not part of it.
+     */
+    public int nodeNumber(Node node) {
+        if (node instanceof GridNode && ((GridNode) node).graph() == this) {
+            return ((GridNode) node).number();
+        }
+        Integer number = nodeNumbers.get(node);
+        if (number == null) {
+            return -1;
+        }
+        return number;
+    }
+
+    /**
+     * Returns the Node with the given number. A Node that is not a Colony is
+     * created the first time it is asked for; threads asking at once get the
+     * same instance.
+     */
+    public Node node(int number) {
+        Node node = nodes[number];
+        if (node == null) {
+            node = new GridNode(this, sugarAmounts, number);
+            Node existing = (Node) NODE.compareAndExchange(nodes, number, (Node) null, node);
+            if (existing != null) {
+                node = existing;
             }
         }
+        return node;
     }
 
     /**
-     * Checks for Node instances next to the one calling this method.
+     * Returns the number of Node instances in this graph.
      */
-    public Node[] adjacentTo(Node node) {
-        ArrayList<Node> nodes = new ArrayList<>();
-        for (Edge edge : edges) {
-            if (edge.source() == node) {
-                nodes.add(edge.target());
-            } else if (edge.target() == node) {
-                nodes.add(edge.source());
+    public int nodeCount() {
+        return nodes.length;
+    }
+
+    /**
+     * Returns the number of Edge instances in this graph.
+     */
+    public int edgeCount() {
+        return pheromones.size();
+    }
+
+    /**
+     * Returns an Edge instance for the Edge with the given number. It is created
+     * on each call; the graph itself keeps none.
+     */
+    public Edge edge(int number) {
+        return new Edge(node(edgeSource(number)), node(edgeTarget(number)));
+    }
+
+    /**
+     * Returns the neighbours of the Node with the given number, in the same order
+     * as adjacentTo. The array is created on each call; adjacentTo keeps the one
+     * it creates, and neighbour() does not create one.
+     */
+    public Node[] adjacentNodes(int node) {
+        Node[] adjacent = new Node[degree(node)];
+        for (int k = 0; k < adjacent.length; k = k + 1) {
+            adjacent[k] = node(neighbour(node, k));
+        }
+        return adjacent;
+    }
+
+    /**
+     * Returns the numbers of the Edge instances from the Node with the given
+     * number, in the same order as its neighbours. The array is created on each
+     * call.
+     */
+    public int[] adjacentEdges(int node) {
+        int[] adjacent = new int[degree(node)];
+        for (int k = 0; k < adjacent.length; k = k + 1) {
+            adjacent[k] = adjacentEdge(node, k);
+        }
+        return adjacent;
+    }
+
+    /**
+     * Returns the number of neighbours of the Node with the given number.
+     */
+    public int degree(int node) {
+        if (grid == null) {
+            return adjacency.offset(node + 1) - adjacency.offset(node);
+        }
+        return grid.degree(node);
+    }
+
+    /**
+     * Returns the number of the k-th neighbour of the Node with the given
+     * number, in the order of adjacentNodes.
+     */
+    public int neighbour(int node, int k) {
+        if (grid == null) {
+            return adjacency.neighbour(adjacency.offset(node) + k);
+        }
+        return grid.neighbour(node, k);
+    }
+
+    /**
+     * Returns the number of the Edge to the k-th neighbour of the Node with the
+     * given number.
+     */
+    public int adjacentEdge(int node, int k) {
+        if (grid == null) {
+            return adjacency.edge(adjacency.offset(node) + k);
+        }
+        return grid.edge(node, k);
+    }
+
+    /**
+     * Gets the amount of pheromones in the Edge with the given number.
+     */
+    public int pheromoneLevel(int edge) {
+        return pheromones.level(edge);
+    }
+
+    /**
+     * Increases the amount of pheromones in the Edge with the given number. Unlike
+     * raisePheromones between two Node instances, a loop is raised only once.
+     */
+    public void raisePheromones(int edge, int amount) {
+        pheromones.raise(edge, amount);
+    }
+
+    /**
+     * Increases the amount of pheromones in the Edge with the given number in a
+     * way that is safe when several threads raise pheromones at once. Needs
+     * eager evaporation. A loop is raised only once.
+     */
+    public void raisePheromonesConcurrently(int edge, int amount) {
+        pheromones.raiseConcurrently(edge, amount);
+    }
+
+    /**
+     * Returns the number of the Edge between the Node instances with the given
+     * numbers, or -1 if there is none. A graph without an EdgeIndex searches
+     * the shorter of the two adjacency lists.
+     */
+    public int edgeNumber(int source, int target) {
+        if (grid != null) {
+            return grid.edgeNumber(source, target);
+        }
+        if (edgeIndex == null) {
+            return adjacency.edgeNumber(source, target);
+        }
+        return edgeIndex.get(source, target);
+    }
+
+    /**
+     * Returns the neighbours of all Node instances by number, in compressed
+     * form and in the same order as adjacentNodes. The lists are shared and must
+     * not be modified. A grid builds them the first time they are asked for.
+     */
+    public AdjacencyLists adjacency() {
+        if (adjacency == null) {
+            int[][] ends = edgeEnds();
+            adjacency = AdjacencyLists.build(nodes.length, ends[0], ends[1]);
+        }
+        return adjacency;
+    }
+
+    /**
+     * Sets the amount of pheromones in the Edge with the given number.
+     */
+    public void setPheromoneLevel(int edge, int level) {
+        pheromones.set(edge, level);
+    }
+
+    /**
+     * Returns the RandomSource this graph draws its random numbers from.
+     */
+    public RandomSource randomSource() {
+        return random;
+    }
+
+    /**
+     * Returns the largest number of neighbours of any Node in this graph.
+     */
+    public int maxDegree() {
+        return maxDegree;
+    }
+
+    /**
+     * Returns the amount of sugar in the Node with the given number, without
+     * creating the Node.
+     */
+    public int sugar(int node) {
+        if (nodes[node] instanceof Colony) {
+            return nodes[node].sugar();
+        }
+        return sugarAmounts[node];
+    }
+
+    /**
+     * Sets the amount of sugar in the Node with the given number.
+     */
+    public void setSugar(int node, int amount) {
+        if (nodes[node] instanceof Colony) {
+            nodes[node].setSugar(amount);
+            return;
+        }
+        int before = sugarAmounts[node];
+        sugarAmounts[node] = amount;
+        sugar.nodeChanged(node, before, amount);
+    }
+
+    /**
+     * Takes one unit of sugar from the Node with the given number, as an ant
+     * does when it picks sugar up.
+     */
+    public void takeSugar(int node) {
+        if (nodes[node] instanceof Colony) {
+            ((Colony) nodes[node]).consume();
+            return;
+        }
+        int before = sugarAmounts[node];
+        sugarAmounts[node] = before - 1;
+        sugar.nodeChanged(node, before, before - 1);
+    }
+
+    /**
+     * Takes one unit of sugar from the given Node.
+     */
+    public void takeSugar(Node node) {
+        takeSugar(nodeNumber(node));
+    }
+
+    /**
+     * Returns the sugar on all nodes that are not colonies, without scanning
+     * them.
+     */
+    public long nodeSugar() {
+        return sugar.nodeSugar();
+    }
+
+    /**
+     * Returns the sugar stock of all colonies, without scanning them.
+     */
+    public long colonySugar() {
+        return sugar.colonySugar();
+    }
+
+    /**
+     * Returns the number of nodes, other than colonies, that hold sugar.
+     */
+    public int sugarNodeCount() {
+        return sugar.size();
+    }
+
+    /**
+     * Returns the number of the k-th Node holding sugar, for k from 0 up to
+     * sugarNodeCount(), in no particular order.
+     */
+    public int sugarNode(int k) {
+        return sugar.node(k);
+    }
+
+    /**
+     * Creates an empty copy of this graph: the same nodes and edges under the
+     * same numbers, but with Node and Colony instances of its own, no sugar and
+     * no pheromones. The neighbours and edges are shared, not copied. Its state
+     * is filled in by copyStateTo. The copy never ticks, so it can be shown by
+     * another thread while this graph goes on.
+     */
+    public Graph emptyCopy() {
+        Graph copy = new Graph(sugarProbability, sugarAverage, random);
+        Node[] copies = new Node[nodes.length];
+        for (int i = 0; i < nodes.length; i = i + 1) {
+            if (nodes[i] instanceof Colony) {
+                copies[i] = new Colony();
             }
         }
-        return nodes.toArray(new Node[0]);
+        copy.sugarAmounts = new int[nodes.length];
+        if (grid != null) {
+            copy.grid = grid;
+            copy.connectGrid(copies);
+        } else {
+            copy.connect(copies, sources, targets, edgeIndex, adjacency);
+        }
+        return copy;
+    }
+
+    /**
+     * Copies the sugar in every Node and the pheromones on every Edge to a
+     * graph made by emptyCopy.
+     */
+    public void copyStateTo(Graph copy) {
+        for (int i = 0; i < nodes.length; i = i + 1) {
+            copy.setSugar(i, sugar(i));
+        }
+        for (int i = 0; i < edgeCount(); i = i + 1) {
+            copy.pheromones.set(i, pheromones.level(i));
+        }
     }
 
     /**
@@ -108,152 +569,264 @@ public class Graph {
      * sugar.
      */
     public void tick() {
-        for (Edge edge : edges) {
-            edge.decreasePheromones();
-        }
-        if (RandomUtils.coinFlip(sugarProbability)) {
+        pheromones.decay();
+        if (spawnPerNode) {
+            spawnSugarOnNodes();
+        } else if (random.coinFlip(sugarProbability)) {
             spawnSugar();
         }
     }
 
     /**
-     * Creates a 2D array to represent the position of Node instances relative to
-     * each other.
+     * Finds the number of the Edge connecting two Node instances, or -1 if there
+     * is none.
      */
-    private Node[][] fillingInNodesTo2dArray(int width, int depth) {
-        Node[][] nodeGrid = new Node[width][depth];
-        for (int i = 0; i < width; i++) {
-            for (int j = 0; j < depth; j++) {
-                if (RandomUtils.coinFlip(sugarProbability)) {
-                    nodeGrid[i][j] = new Node(RandomUtils.randomPoisson(sugarAverage));
-                } else {
-                    nodeGrid[i][j] = new Node();
-                }
-            }
+    private int edgeBetween(Node source, Node target) {
+        int sourceNumber = nodeNumber(source);
+        int targetNumber = nodeNumber(target);
+        if (sourceNumber < 0 || targetNumber < 0) {
+            return -1;
         }
-        return nodeGrid;
+        return edgeNumber(sourceNumber, targetNumber);
     }
 
     /**
-     * Takes 2D array and converts a given amount of them from Nodes to Colony
-     * instances.
+     * Returns the number of the first end of the Edge with the given number.
      */
-    private void insertingColoniesToMap(Node[][] nodeGrid, Colony[] colonies, int width, int depth) {
-        for (int i = 0; i < colonies.length;) {
-            final int widthPostion = RandomUtils.randomInt(width);
-            final int depthPosition = RandomUtils.randomInt(depth);
-            if (!(isPositionColony(nodeGrid, widthPostion, depthPosition))) {
-                nodeGrid[widthPostion][depthPosition] = colonies[i];
-                i = i + 1;
+    private int edgeSource(int edge) {
+        return grid != null ? grid.source(edge) : sources.get(edge);
+    }
+
+    /**
+     * Returns the number of the second end of the Edge with the given number.
+     */
+    private int edgeTarget(int edge) {
+        return grid != null ? grid.target(edge) : targets.get(edge);
+    }
+
+    /**
+     * Returns the numbers of the first and second ends of all edges, in two
+     * arrays created on each call.
+     */
+    private int[][] edgeEnds() {
+        int[] first = new int[edgeCount()];
+        int[] second = new int[first.length];
+        for (int i = 0; i < first.length; i = i + 1) {
+            first[i] = edgeSource(i);
+            second[i] = edgeTarget(i);
+        }
+        return new int[][] { first, second };
+    }
+
+    /**
+     * Numbers the nodes in the order given and connects the nodes with the given
+     * numbers, for every pair of sources and targets. Only the colonies are
+     * given as Node instances; node() creates the others when they are asked
+     * for. The index, if there is one, finds an Edge by the numbers of its two
+     * ends without scanning. The pheromone levels are kept in a PheromoneStore
+     * under the same edge numbers.
+     */
+    private void connect(Node[] nodeLocation, IntBuffer sources, IntBuffer targets, EdgeIndex index,
+            AdjacencyLists adjacency) {
+        this.nodes = nodeLocation;
+        this.nodeNumbers = new IdentityHashMap<>();
+        for (int i = 0; i < nodeLocation.length; i = i + 1) {
+            if (nodeLocation[i] != null) {
+                nodeNumbers.put(nodeLocation[i], i);
             }
         }
+        this.sources = sources;
+        this.targets = targets;
+        this.edgeIndex = index;
+        this.pheromones = new PheromoneStore(sources.limit());
+        this.adjacency = adjacency;
+        for (int i = 0; i < nodeLocation.length; i = i + 1) {
+            maxDegree = Math.max(maxDegree, adjacency.offset(i + 1) - adjacency.offset(i));
+        }
+        indexSugar();
     }
 
     /**
-     * Creates connecting Edge instance between Node instances with source and
-     * targets.
+     * Numbers the nodes of the grid as its GridTopology does. Only the colonies
+     * are given as Node instances; node() creates the others when they are
+     * asked for.
      */
-    private Edge[] createEdgesBetweenNodes(int width, int depth, Node[][] nodeGrid) {
-        List<Edge> edges = new ArrayList<>();
-        for (int i = 0; i < width; i++) {
-            for (int j = 0; j < depth; j++) {
-                if (i + 1 < width) {
-                    edges.add(new Edge(nodeGrid[i][j], nodeGrid[i + 1][j]));
-                }
-                if (j + 1 < depth) {
-                    edges.add(new Edge(nodeGrid[i][j], nodeGrid[i][j + 1]));
-                }
+    private void connectGrid(Node[] nodeLocation) {
+        this.nodes = nodeLocation;
+        this.nodeNumbers = new IdentityHashMap<>();
+        for (int i = 0; i < nodeLocation.length; i = i + 1) {
+            if (nodeLocation[i] != null) {
+                nodeNumbers.put(nodeLocation[i], i);
             }
         }
-        return edges.toArray(new Edge[edges.size()]);
+        this.pheromones = new PheromoneStore(grid.edgeCount());
+        this.maxDegree = grid.maxDegree();
+        indexSugar();
     }
 
     /**
-     * Randomly decides whether to increase the amount of sugar in a Node by a
-     * random amount.
+     * Creates the SugarIndex from the sugar the nodes hold, and attaches the
+     * colonies to it so they report their stock.
      */
-    private void spawnSugar() {
-        int randomEdgeIndex = RandomUtils.randomInt(edges.length);
-        Edge randomEdge = edges[randomEdgeIndex];
-        if (RandomUtils.coinFlip(0.50)) {
-            randomEdge.source().setSugar(RandomUtils.randomPoisson(sugarAverage));
-        } else {
-            randomEdge.target().setSugar(RandomUtils.randomPoisson(sugarAverage));
+    private void indexSugar() {
+        this.sugar = new SugarIndex(nodes.length);
+        for (int i = 0; i < nodes.length; i = i + 1) {
+            if (nodes[i] instanceof Colony) {
+                ((Colony) nodes[i]).attach(sugar);
+                sugar.colonyChanged(0, nodes[i].sugar());
+            } else {
+                sugar.nodeChanged(i, 0, sugar(i));
+            }
         }
     }
 
     /**
-     * Checks if the instance calling this method is currently in an instance of
-     * Colony.
+     * Fills the sugar array of the grid row by row, drawing for every Node
+     * whether it holds sugar and how much.
      */
-    private boolean isPositionColony(Node[][] map, int widthPostion, int depthPosition) {
-        return map[widthPostion][depthPosition] instanceof Colony;
+    private void fillingInSugarToGrid() {
+        fillingInSugar(0, sugarAmounts.length, random);
     }
 
     /**
-     * Adds Colony instances to Node array.
+     * Fills the sugar array of the grid in bands of rows, each band drawing from
+     * a stream of its own, split from the random source in the order of the
+     * bands. The bands are filled by the given number of threads.
      */
-    private void addColoniesToNodeArray(String[] colonyInformation, Node[] nodeLocation, Colony[] homes) {
-        int colonyCounter = 0;
-        for (String colony : colonyInformation) {
-            int colonyIndex = Integer.parseInt(colony) - 1;
-            nodeLocation[colonyIndex] = homes[colonyCounter];
-            colonyCounter = colonyCounter + 1;
+    private void fillingInSugarInBands(int threads) {
+        int rowsPerBand = Math.max(1, BAND_NODES / grid.depth());
+        List<Callable<Void>> bands = new ArrayList<>();
+        for (int row = 0; row < grid.width(); row = row + rowsPerBand) {
+            int from = row * grid.depth();
+            int to = Math.min(row + rowsPerBand, grid.width()) * grid.depth();
+            RandomSource bandRandom = random.split();
+            bands.add(() -> {
+                fillingInSugar(from, to, bandRandom);
+                return null;
+            });
         }
+        ForkJoinPool pool = new ForkJoinPool(Math.max(threads, 1));
+        try {
+            for (Future<Void> result : pool.invokeAll(bands)) {
+                try {
+                    result.get();
+                } catch (ExecutionException e) {
+                    throw new RuntimeException(e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(e);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Draws for every Node from the first number up to the second whether it
+     * holds sugar and how much.
+     */
+    private void fillingInSugar(int from, int to, RandomSource random) {
+        sugarDistribution.fill(sugarAmounts, from, to, random);
     }
 
     /**
-     * Fills out empty slot in Nodes array.
+     * Turns a given amount of grid positions into Colony instances, drawing again
+     * when a position already holds a Colony. The sugar on those positions is
+     * dropped.
      */
-    private void addNewNodesToEmptyIndexes(Node[] nodeLocation) {
-        int i = 0;
-        while (i < nodeLocation.length) {
-            if (nodeLocation[i] == null) {
-                Node node = new Node();
-                nodeLocation[i] = node;
+    private void insertingColoniesToMap(Node[] nodeLocation, Colony[] colonies) {
+        for (int i = 0; i < colonies.length;) {
+            final int widthPostion = random.randomInt(grid.width());
+            final int depthPosition = random.randomInt(grid.depth());
+            int node = widthPostion * grid.depth() + depthPosition;
+            if (!(isPositionColony(nodeLocation, node))) {
+                nodeLocation[node] = colonies[i];
+                sugarAmounts[node] = 0;
+                i = i + 1;
             }
-            i = i + 1;
         }
     }
 
     /**
-     * Creates a connecting Edge instance between two Node instances.
+     * Places the colonies on distinct random nodes of the grid, as the first
+     * draws of a shuffle of all nodes. Only the positions the shuffle has moved
+     * are stored, so placing k colonies takes k draws however full the grid
+     * gets. The sugar on those positions is dropped.
+     */
+    private void placingColoniesWithoutReplacement(Node[] nodeLocation, Colony[] colonies) {
+        Map<Integer, Integer> moved = new HashMap<>();
+        for (int i = 0; i < colonies.length; i = i + 1) {
+            int drawn = i + random.randomInt(nodeLocation.length - i);
+            int node = moved.getOrDefault(drawn, drawn);
+            moved.put(drawn, moved.getOrDefault(i, i));
+            nodeLocation[node] = colonies[i];
+            sugarAmounts[node] = 0;
+        }
+    }
+
+    /**
+     * Randomly decides whether to increase the amount of sugar in a Node by a
+     * random amount.
      */
-    private void createEdges(Scanner filescanner, Node[] nodeLocation) {
-        List<Edge> edges = new ArrayList<>();
-        while (filescanner.hasNextLine()) {
-            int nodeA = filescanner.nextInt() - 1;
-            int nodeB = filescanner.nextInt() - 1;
-            filescanner.nextLine();
-            Edge edge = new Edge(nodeLocation[nodeA], nodeLocation[nodeB]);
-            checkDuplicateEdge(edge, edges);
-            edges.add(edge);
+    private void spawnSugar() {
+        int randomEdgeIndex = random.randomInt(edgeCount());
+        if (random.coinFlip(0.50)) {
+            setSugar(edgeSource(randomEdgeIndex), sugarDistribution.sample(random));
+        } else {
+            setSugar(edgeTarget(randomEdgeIndex), sugarDistribution.sample(random));
         }
-        this.edges = edges.toArray(new Edge[edges.size()]);
     }
 
     /**
-     * Checks whether multiple Edge instances target the same Node in the same
-     * direction.
+     * Puts a random amount of sugar on every Node that is not a Colony with
+     * probability sugarProbability, going from spawn to spawn by geometric
+     * skips over the nodes in between.
      */
-    private void checkDuplicateEdge(Edge edge, List<Edge> edges) {
-        for (Edge other : edges) {
-            boolean isSameWay = other.source() == edge.source() && other.target() == edge.target();
-            boolean isOtherWay = other.source() == edge.target() && other.target() == edge.source();
-            if (isSameWay || isOtherWay) {
-                throw new RuntimeException("Duplicate edges");
+    private void spawnSugarOnNodes() {
+        long node = sugarDistribution.skip(random);
+        while (node < nodes.length) {
+            if (!(nodes[(int) node] instanceof Colony)) {
+                setSugar((int) node, sugarDistribution.sample(random));
             }
+            node = node + 1 + sugarDistribution.skip(random);
+        }
+    }
+
+    /**
+     * Checks if the instance calling this method is currently in an instance of
+     * Colony.
+     */
+    private boolean isPositionColony(Node[] map, int node) {
+        return map[node] instanceof Colony;
+    }
+
+    /**
+     * Adds Colony instances to Node array.
+     */
+    private void addColoniesToNodeArray(int[] colonyNodes, Node[] nodeLocation, Colony[] homes) {
+        if (colonyNodes.length > homes.length) {
+            throw new RuntimeException(
+                    "File lists " + colonyNodes.length + " colonies, but only " + homes.length + " were given");
+        }
+        int colonyCounter = 0;
+        for (int colonyIndex : colonyNodes) {
+            nodeLocation[colonyIndex] = homes[colonyCounter];
+            colonyCounter = colonyCounter + 1;
         }
     }
 
     /**
-     * Increases the amount of sugar in a given Node instance.
+     * Draws the sugar on every Node. A Colony keeps what it draws as its stock
+     * if that is more than nothing.
      */
-    private void addSugarToNodes(Node[] nodeLocation) {
-        for (Node node : nodeLocation) {
-            if (RandomUtils.coinFlip(sugarProbability)) {
-                node.setSugar(RandomUtils.randomPoisson(sugarAverage));
+    private void addSugarToNodes(int[] colonyNodes, Node[] nodeLocation) {
+        sugarDistribution.fill(sugarAmounts, 0, sugarAmounts.length, random);
+        for (int colonyIndex : colonyNodes) {
+            if (sugarAmounts[colonyIndex] > 0) {
+                nodeLocation[colonyIndex].setSugar(sugarAmounts[colonyIndex]);
             }
+            sugarAmounts[colonyIndex] = 0;
         }
     }
 }
\ No newline at end of file
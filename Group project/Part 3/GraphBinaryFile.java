@@ -0,0 +1,315 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * The GraphBinaryFile class reads and writes graphs in a compact binary format,
+ * so that a large graph only has to be parsed and checked once. The file is a
+ * sequence of little-endian ints:
+ *
+ * magic, version, node count, colony count, edge count, adjacency length, the
+ * colony nodes, the sources and targets of the edges, and the adjacency offsets,
+ * neighbours and edge numbers of an AdjacencyLists (see there).
+ *
+ * Reading maps the file into memory and keeps the sections of the edges and
+ * of the AdjacencyLists as IntBuffers on the mapping, so they are read in place
+ * rather than copied; only the colony nodes are copied. Edges are found
+ * through the adjacency lists instead of an EdgeIndex. Every section is
+ * checked once when the file is read, so a damaged file gives an IOException
+ * saying what is wrong rather than wrong neighbours later on.
+ *
+ * Convert a text graph file with: java GraphBinaryFile graph.txt graph.bin
+ */
+public class GraphBinaryFile implements GraphData {
+    private static final int MAGIC = 0x47544E41; // "ANTG" in little-endian order
+    private static final int VERSION = 1;
+    private static final int HEADER_INTS = 6;
+
+    private int nodeCount;
+    private int[] colonies;
+    private IntBuffer sources;
+    private IntBuffer targets;
+    private AdjacencyLists adjacency;
+
+    /**
+     * Constructor reads the binary graph file with the given name.
+     */
+    public GraphBinaryFile(String filename) throws IOException {
+        FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+        IntBuffer offsets;
+        IntBuffer neighbours;
+        IntBuffer edges;
+        try {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Binary graph file is larger than 2 GB");
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            IntBuffer ints = mapped.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+            if (ints.remaining() < HEADER_INTS || ints.get() != MAGIC) {
+                throw new IOException("Not a binary graph file");
+            }
+            int version = ints.get();
+            if (version != VERSION) {
+                throw new IOException("Unsupported binary graph version " + version);
+            }
+            this.nodeCount = ints.get();
+            int colonyCount = ints.get();
+            int edgeCount = ints.get();
+            int adjacencyLength = ints.get();
+            if (nodeCount < 0 || nodeCount == Integer.MAX_VALUE || colonyCount < 0 || edgeCount < 0
+                    || adjacencyLength < 0) {
+                throw new IOException("Binary graph file has a damaged header");
+            }
+            long expected = (long) colonyCount + 2L * edgeCount + nodeCount + 1 + 2L * adjacencyLength;
+            if (ints.remaining() != expected) {
+                throw new IOException("Binary graph file is truncated or damaged");
+            }
+            this.colonies = new int[colonyCount];
+            ints.get(colonies);
+            this.sources = section(ints, edgeCount);
+            this.targets = section(ints, edgeCount);
+            offsets = section(ints, nodeCount + 1);
+            neighbours = section(ints, adjacencyLength);
+            edges = section(ints, adjacencyLength);
+        } finally {
+            channel.close();
+        }
+        checkColonies();
+        checkEdges();
+        checkAdjacency(offsets, neighbours, edges);
+        this.adjacency = new AdjacencyLists(offsets, neighbours, edges);
+    }
+
+    /**
+     * Converts a text graph file into a binary one.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: java GraphBinaryFile <text graph file> <binary graph file>");
+            System.exit(-1);
+        }
+        write(new GraphFileReader(args[0]), args[1]);
+    }
+
+    /**
+     * Writes a graph to a binary file with the given name.
+     */
+    public static void write(GraphData graph, String filename) throws IOException {
+        AdjacencyLists adjacency = graph.adjacency();
+        int[] header = { MAGIC, VERSION, graph.nodeCount(), graph.colonies().length, graph.sources().limit(),
+                adjacency.offset(graph.nodeCount()) };
+        Path path = Paths.get(filename);
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+            writeInts(channel, buffer, IntBuffer.wrap(header));
+            writeInts(channel, buffer, IntBuffer.wrap(graph.colonies()));
+            writeInts(channel, buffer, graph.sources());
+            writeInts(channel, buffer, graph.targets());
+            writeInts(channel, buffer, IntBuffer.wrap(adjacency.offsets()));
+            writeInts(channel, buffer, IntBuffer.wrap(adjacency.neighbours()));
+            writeInts(channel, buffer, IntBuffer.wrap(adjacency.edges()));
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Checks whether the file with the given name starts like a binary graph
+     * file.
+     */
+    public static boolean isBinaryGraph(String filename) throws IOException {
+        ByteBuffer header = readHeader(filename);
+        return header.limit() == HEADER_INTS * 4 && header.getInt(0) == MAGIC;
+    }
+
+    /**
+     * Returns the number of colonies in a binary graph file, read from its
+     * header.
+     */
+    public static int colonyCount(String filename) throws IOException {
+        if (!isBinaryGraph(filename)) {
+            throw new IOException("Not a binary graph file");
+        }
+        return readHeader(filename).getInt(3 * 4);
+    }
+
+    /**
+     * Reads the header of a file, or as much of it as the file holds.
+     */
+    private static ByteBuffer readHeader(String filename) throws IOException {
+        FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_INTS * 4).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // keep reading until the header is complete or the file ends
+            }
+            header.flip();
+            return header;
+        } finally {
+            channel.close();
+        }
+    }
+
+    @Override
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+    @Override
+    public int[] colonies() {
+        return colonies;
+    }
+
+    @Override
+    public IntBuffer sources() {
+        return sources;
+    }
+
+    @Override
+    public IntBuffer targets() {
+        return targets;
+    }
+
+    @Override
+    public EdgeIndex edgeIndex() {
+        return null;
+    }
+
+    @Override
+    public AdjacencyLists adjacency() {
+        return adjacency;
+    }
+
+    /**
+     * Returns the next section of the file, of the given length, as a buffer of
+     * its own on the same mapping.
+     */
+    private static IntBuffer section(IntBuffer ints, int length) {
+        IntBuffer section = ints.slice();
+        section.limit(length);
+        ints.position(ints.position() + length);
+        return section;
+    }
+
+    /**
+     * Checks that the colonies are distinct nodes of the graph.
+     */
+    private void checkColonies() throws IOException {
+        int[] sorted = colonies.clone();
+        Arrays.sort(sorted);
+        for (int i = 0; i < sorted.length; i = i + 1) {
+            if (!isNode(sorted[i])) {
+                throw new IOException("Colony node " + sorted[i] + " is not between 0 and " + nodeCount);
+            }
+            if (i > 0 && sorted[i] == sorted[i - 1]) {
+                throw new IOException("Colony node " + sorted[i] + " is listed twice");
+            }
+        }
+    }
+
+    /**
+     * Checks that both ends of every edge are nodes of the graph.
+     */
+    private void checkEdges() throws IOException {
+        for (int i = 0; i < sources.limit(); i = i + 1) {
+            if (!isNode(sources.get(i)) || !isNode(targets.get(i))) {
+                throw new IOException("Edge " + i + " from node " + sources.get(i) + " to node " + targets.get(i)
+                        + " has an end that is not between 0 and " + nodeCount);
+            }
+        }
+    }
+
+    /**
+     * Checks that the offsets run from 0 to the length of the lists without
+     * going back or past the end, that every listed edge exists, and that the lists hold every
+     * edge at both of its ends, a loop once, with the other end as neighbour.
+     * The last check compares the sum of a hash of every (edge, node, neighbour)
+     * in the lists with the same sum over the edges, so all sections are read
+     * in order; a damaged file passes it only by a chance of about 2^-64.
+     */
+    private void checkAdjacency(IntBuffer offsets, IntBuffer neighbours, IntBuffer edges) throws IOException {
+        if (offsets.get(0) != 0 || offsets.get(nodeCount) != neighbours.limit()) {
+            throw new IOException("Adjacency offsets do not cover the adjacency lists");
+        }
+        long listed = 0;
+        for (int n = 0; n < nodeCount; n = n + 1) {
+            int start = offsets.get(n);
+            int end = offsets.get(n + 1);
+            if (end < start || end > neighbours.limit()) {
+                throw new IOException("Adjacency offsets decrease or run past the lists at node " + n);
+            }
+            for (int k = start; k < end; k = k + 1) {
+                int edge = edges.get(k);
+                if (edge < 0 || edge >= sources.limit()) {
+                    throw new IOException("Adjacency list of node " + n + " has edge " + edge
+                            + ", which is not between 0 and " + sources.limit());
+                }
+                listed = listed + hash(edge, n, neighbours.get(k));
+            }
+        }
+        long expected = 0;
+        for (int i = 0; i < sources.limit(); i = i + 1) {
+            expected = expected + hash(i, sources.get(i), targets.get(i));
+            if (sources.get(i) != targets.get(i)) {
+                expected = expected + hash(i, targets.get(i), sources.get(i));
+            }
+        }
+        if (listed != expected) {
+            throw new IOException("Adjacency lists do not match the edges");
+        }
+    }
+
+    /**
+     * Mixes an edge number and the node numbers at its two ends into 64 bits.
+     */
+    private static long hash(int edge, int node, int neighbour) {
+        long hash = ((long) edge << 32 | (node & 0xFFFFFFFFL)) * 0x9E3779B97F4A7C15L + neighbour;
+        hash = (hash ^ (hash >>> 30)) * 0xBF58476D1CE4E5B9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94D049BB133111EBL;
+        return hash ^ (hash >>> 31);
+    }
+
+    /**
+     * Returns true if a number is between 0 and the number of nodes.
+     */
+    private boolean isNode(int node) {
+        return node >= 0 && node < nodeCount;
+    }
+
+    /**
+     * Appends a buffer, from position 0 to its limit, to the output through the
+     * byte buffer, writing that to the file whenever it is full.
+     */
+    private static void writeInts(FileChannel channel, ByteBuffer buffer, IntBuffer values) throws IOException {
+        IntBuffer remaining = values.duplicate();
+        remaining.position(0);
+        while (remaining.hasRemaining()) {
+            if (buffer.remaining() < 4) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                buffer.clear();
+            }
+            int count = Math.min(remaining.remaining(), buffer.remaining() / 4);
+            IntBuffer part = remaining.duplicate();
+            part.limit(part.position() + count);
+            buffer.asIntBuffer().put(part);
+            buffer.position(buffer.position() + count * 4);
+            remaining.position(remaining.position() + count);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+import java.nio.IntBuffer;
+
+/**
+ * A GraphData is the content of a graph file after reading: the number of
+ * nodes, the colony nodes, the edges and the neighbours of every node. All nodes
+ * are numbered from 0. The edges are IntBuffers from position 0 to their limit,
+ * so they can be read in place from a file mapped into memory.
+ */
+public interface GraphData {
+
+    /**
+     * Returns the number of nodes in the graph.
+     */
+    int nodeCount();
+
+    /**
+     * Returns the numbers of the colony nodes, in the order of the file.
+     */
+    int[] colonies();
+
+    /**
+     * Returns the first node of every edge, in the order of the file.
+     */
+    IntBuffer sources();
+
+    /**
+     * Returns the second node of every edge, in the order of the file.
+     */
+    IntBuffer targets();
+
+    /**
+     * Returns the index from pairs of nodes to edge numbers, or null if edges
+     * are to be found through the adjacency lists.
+     */
+    EdgeIndex edgeIndex();
+
+    /**
+     * Returns the neighbours of every node.
+     */
+    AdjacencyLists adjacency();
+}
@@ -0,0 +1,227 @@
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * The GraphFileReader class reads a graph file: the number of nodes on the first
+ * line, the colony nodes on the second line, and one edge per remaining line.
+ * Nodes are numbered from 1 in the file and from 0 by this class. The file is
+ * read in large blocks of bytes and the numbers are parsed directly from them,
+ * and duplicate edges are found with an EdgeIndex, so large files load in time
+ * proportional to their size.
+ *
+ * Malformed files cause a RuntimeException describing the problem.
+ */
+public class GraphFileReader implements GraphData {
+    private static final int END = -1;
+
+    private InputStream input;
+    private byte[] buffer = new byte[1 << 16];
+    private int position;
+    private int limit;
+    private int line = 1;
+
+    private int nodeCount;
+    private int[] colonies = new int[4];
+    private int colonyCount;
+    private int[] sources = new int[1024];
+    private int[] targets = new int[1024];
+    private int edgeCount;
+    private EdgeIndex edgeIndex = new EdgeIndex(1024);
+
+    /**
+     * Constructor reads the whole file with the given name.
+     */
+    public GraphFileReader(String filename) throws IOException {
+        this.input = new FileInputStream(filename);
+        try {
+            readNodeCount();
+            readColonies();
+            readEdges();
+        } finally {
+            input.close();
+        }
+    }
+
+    @Override
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+    @Override
+    public int[] colonies() {
+        return Arrays.copyOf(colonies, colonyCount);
+    }
+
+    @Override
+    public IntBuffer sources() {
+        return IntBuffer.wrap(sources);
+    }
+
+    @Override
+    public IntBuffer targets() {
+        return IntBuffer.wrap(targets);
+    }
+
+    @Override
+    public EdgeIndex edgeIndex() {
+        return edgeIndex;
+    }
+
+    @Override
+    public AdjacencyLists adjacency() {
+        return AdjacencyLists.build(nodeCount, sources, targets);
+    }
+
+    /**
+     * Reads the first number of the first line; the rest of the line is ignored.
+     */
+    private void readNodeCount() throws IOException {
+        nodeCount = readInt();
+        if (nodeCount < 0) {
+            throw new RuntimeException("Negative number of nodes: " + nodeCount);
+        }
+        skipLine();
+    }
+
+    /**
+     * Reads the colony nodes from the second line.
+     */
+    private void readColonies() throws IOException {
+        skipSpaces();
+        while (peek() != '\n' && peek() != END) {
+            int colony = readNode();
+            if (colonyCount == colonies.length) {
+                colonies = Arrays.copyOf(colonies, colonyCount * 2);
+            }
+            colonies[colonyCount] = colony;
+            colonyCount = colonyCount + 1;
+            skipSpaces();
+        }
+        skipLine();
+    }
+
+    /**
+     * Reads one edge from every remaining line; blank lines are skipped and
+     * anything after the two nodes of an edge is ignored.
+     */
+    private void readEdges() throws IOException {
+        skipSpaces();
+        while (peek() != END) {
+            if (peek() != '\n') {
+                int source = readNode();
+                int target = readNode();
+                if (edgeCount == sources.length) {
+                    sources = Arrays.copyOf(sources, edgeCount * 2);
+                    targets = Arrays.copyOf(targets, edgeCount * 2);
+                }
+                if (!edgeIndex.put(source, target, edgeCount)) {
+                    throw new RuntimeException("Duplicate edges");
+                }
+                sources[edgeCount] = source;
+                targets[edgeCount] = target;
+                edgeCount = edgeCount + 1;
+            }
+            skipLine();
+            skipSpaces();
+        }
+        sources = Arrays.copyOf(sources, edgeCount);
+        targets = Arrays.copyOf(targets, edgeCount);
+    }
+
+    /**
+     * Reads a node number and checks that it is in the graph. Returns it counted
+     * from 0.
+     */
+    private int readNode() throws IOException {
+        int node = readInt();
+        if (node < 1 || node > nodeCount) {
+            throw new RuntimeException("Node " + node + " on line " + line + " is not between 1 and " + nodeCount);
+        }
+        return node - 1;
+    }
+
+    /**
+     * Reads a whole number on the current line, after any spaces.
+     */
+    private int readInt() throws IOException {
+        skipSpaces();
+        boolean negative = peek() == '-';
+        if (negative) {
+            next();
+        }
+        if (peek() < '0' || peek() > '9') {
+            throw new RuntimeException("Expected a number on line " + line);
+        }
+        long value = 0;
+        while (peek() >= '0' && peek() <= '9') {
+            value = value * 10 + (next() - '0');
+            if (value > Integer.MAX_VALUE) {
+                throw new RuntimeException("Number too large on line " + line);
+            }
+        }
+        return negative ? (int) -value : (int) value;
+    }
+
+    /**
+     * Skips spaces, tabs and carriage returns, but not the end of the line.
+     */
+    private void skipSpaces() throws IOException {
+        int c = peek();
+        while (c == ' ' || c == '\t' || c == '\r') {
+            next();
+            c = peek();
+        }
+    }
+
+    /**
+     * Skips the rest of the current line, including the line break.
+     */
+    private void skipLine() throws IOException {
+        int c = next();
+        while (c != '\n' && c != END) {
+            c = next();
+        }
+    }
+
+    /**
+     * Returns the next byte without reading it, or END at the end of the file.
+     */
+    private int peek() throws IOException {
+        if (position == limit && !fill()) {
+            return END;
+        }
+        return buffer[position];
+    }
+
+    /**
+     * Reads the next byte, or returns END at the end of the file.
+     */
+    private int next() throws IOException {
+        if (position == limit && !fill()) {
+            return END;
+        }
+        byte c = buffer[position];
+        position = position + 1;
+        if (c == '\n') {
+            line = line + 1;
+        }
+        return c;
+    }
+
+    /**
+     * Reads the next block of the file into the buffer. Returns false at the end
+     * of the file.
+     */
+    private boolean fill() throws IOException {
+        limit = input.read(buffer, 0, buffer.length);
+        position = 0;
+        if (limit <= 0) {
+            limit = 0;
+            return false;
+        }
+        return true;
+    }
+}
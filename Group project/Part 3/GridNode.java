@@ -0,0 +1,57 @@
+/**
+ * A GridNode is a Node of a Graph, a grid or one read from a file, that keeps
+ * its sugar in an array of the Graph instead of in itself. The Graph creates a
+ * GridNode only when the Node is asked for, such as when an ant walks onto it;
+ * the sugar of the other nodes lives in the array alone. Changes of the sugar
+ * go through the Graph, so that its SugarIndex stays up to date.
+ */
+public class GridNode extends Node {
+    private final Graph graph;
+    private final int[] sugar;
+    private final int number;
+
+    /**
+     * Constructor creates the Node with the given number of a Graph, whose sugar
+     * is at that position of the given array.
+     */
+    public GridNode(Graph graph, int[] sugar, int number) {
+        this.graph = graph;
+        this.sugar = sugar;
+        this.number = number;
+    }
+
+    /**
+     * Returns the Graph this Node belongs to.
+     */
+    public Graph graph() {
+        return graph;
+    }
+
+    /**
+     * Returns the number of this Node in its Graph.
+     */
+    public int number() {
+        return number;
+    }
+
+    @Override
+    public int sugar() {
+        return sugar[number];
+    }
+
+    /**
+     * Sets the sugar through the Graph, so that it keeps count of it.
+     */
+    @Override
+    public void setSugar(int amount) {
+        graph.setSugar(number, amount);
+    }
+
+    /**
+     * Takes one unit of sugar through the Graph, so that it keeps count of it.
+     */
+    @Override
+    public void decreaseSugar() {
+        graph.takeSugar(number);
+    }
+}
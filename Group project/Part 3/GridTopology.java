@@ -0,0 +1,190 @@
+/**
+ * The GridTopology class describes the nodes and edges of a grid of width rows
+ * and depth columns by arithmetic instead of by lists. The Node at row i and
+ * column j has number i * depth + j. The edges are numbered row by row, and
+ * within a row Node by Node: first the Edge down to the next row, then the
+ * Edge right to the next column. That is the order in which Graph numbered the
+ * edges of a grid when it stored them.
+ *
+ * The neighbours of a Node are listed in the order of their edges: up, left,
+ * down and right, leaving out those beyond the border, just like
+ * AdjacencyLists.build lists them.
+ */
+public class GridTopology {
+    private int width;
+    private int depth;
+    private int rowEdges;
+    private int lastRowStart;
+
+    /**
+     * Constructor describes a grid of the given size.
+     */
+    public GridTopology(int width, int depth) {
+        this.width = width;
+        this.depth = depth;
+        this.rowEdges = 2 * depth - 1;
+        this.lastRowStart = (width - 1) * rowEdges;
+    }
+
+    public int width() {
+        return width;
+    }
+
+    public int depth() {
+        return depth;
+    }
+
+    public int nodeCount() {
+        return width * depth;
+    }
+
+    public int edgeCount() {
+        return (width - 1) * depth + width * (depth - 1);
+    }
+
+    /**
+     * Returns the largest number of neighbours of any Node.
+     */
+    public int maxDegree() {
+        return Math.min(width - 1, 2) + Math.min(depth - 1, 2);
+    }
+
+    /**
+     * Returns the number of neighbours of a Node.
+     */
+    public int degree(int node) {
+        int i = node / depth;
+        int j = node - i * depth;
+        int degree = 0;
+        if (i > 0) {
+            degree = degree + 1;
+        }
+        if (j > 0) {
+            degree = degree + 1;
+        }
+        if (i + 1 < width) {
+            degree = degree + 1;
+        }
+        if (j + 1 < depth) {
+            degree = degree + 1;
+        }
+        return degree;
+    }
+
+    /**
+     * Returns the number of the k-th neighbour of a Node.
+     */
+    public int neighbour(int node, int k) {
+        switch (direction(node, k)) {
+        case 0:
+            return node - depth;
+        case 1:
+            return node - 1;
+        case 2:
+            return node + depth;
+        default:
+            return node + 1;
+        }
+    }
+
+    /**
+     * Returns the number of the Edge to the k-th neighbour of a Node.
+     */
+    public int edge(int node, int k) {
+        switch (direction(node, k)) {
+        case 0:
+            return down(node - depth);
+        case 1:
+            return right(node - 1);
+        case 2:
+            return down(node);
+        default:
+            return right(node);
+        }
+    }
+
+    /**
+     * Returns the number of the Edge between two nodes, or -1 if they are not
+     * neighbours.
+     */
+    public int edgeNumber(int source, int target) {
+        int low = Math.min(source, target);
+        int high = Math.max(source, target);
+        if (low < 0 || high >= nodeCount()) {
+            return -1;
+        }
+        if (high - low == depth) {
+            return down(low);
+        }
+        if (high - low == 1 && high % depth != 0) {
+            return right(low);
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the number of the upper or left end of an Edge.
+     */
+    public int source(int edge) {
+        if (edge >= lastRowStart) {
+            return (width - 1) * depth + edge - lastRowStart;
+        }
+        int i = edge / rowEdges;
+        return i * depth + (edge - i * rowEdges) / 2;
+    }
+
+    /**
+     * Returns the number of the lower or right end of an Edge.
+     */
+    public int target(int edge) {
+        if (edge >= lastRowStart) {
+            return source(edge) + 1;
+        }
+        int i = edge / rowEdges;
+        return source(edge) + ((edge - i * rowEdges) % 2 == 0 ? depth : 1);
+    }
+
+    /**
+     * Returns the direction of the k-th neighbour of a Node: 0 for up, 1 for
+     * left, 2 for down and 3 for right.
+     */
+    private int direction(int node, int k) {
+        int i = node / depth;
+        int j = node - i * depth;
+        if (i > 0) {
+            if (k == 0) {
+                return 0;
+            }
+            k = k - 1;
+        }
+        if (j > 0) {
+            if (k == 0) {
+                return 1;
+            }
+            k = k - 1;
+        }
+        if (i + 1 < width && k == 0) {
+            return 2;
+        }
+        return 3;
+    }
+
+    /**
+     * Returns the number of the Edge from a Node down to the next row.
+     */
+    private int down(int node) {
+        int i = node / depth;
+        return i * rowEdges + 2 * (node - i * depth);
+    }
+
+    /**
+     * Returns the number of the Edge from a Node right to the next column.
+     */
+    private int right(int node) {
+        int i = node / depth;
+        if (i == width - 1) {
+            return lastRowStart + node - i * depth;
+        }
+        return i * rowEdges + 2 * (node - i * depth) + 1;
+    }
+}
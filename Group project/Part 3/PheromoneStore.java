@@ -0,0 +1,125 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * The PheromoneStore class keeps the pheromone level of every Edge in a graph
+ * in one int array, indexed by the number of the Edge. Keeping the levels
+ * together lets the periodic reduction of pheromones run as a single loop over
+ * the array.
+ *
+ * In lazy mode the store does not touch the levels on each tick. It records the
+ * tick at which each Edge was last written, and subtracts the ticks since then
+ * when the Edge is read or raised. Because a level never goes below zero, taking
+ * one unit off k times gives the same result as taking off k units at once and
+ * stopping at zero, so both modes report exactly the same levels.
+ */
+public class PheromoneStore {
+    private static final VarHandle LEVEL = MethodHandles.arrayElementVarHandle(int[].class);
+
+    private int[] levels;
+    private int[] lastTouched;
+    private int ticks;
+    private boolean lazy;
+
+    /**
+     * Constructor creates a store for the given number of edges, all without
+     * pheromones.
+     */
+    public PheromoneStore(int edgeCount) {
+        this.levels = new int[edgeCount];
+    }
+
+    /**
+     * Returns the pheromone level of an Edge.
+     */
+    public int level(int edge) {
+        if (lazy) {
+            return Math.max(levels[edge] - (ticks - lastTouched[edge]), 0);
+        }
+        return levels[edge];
+    }
+
+    /**
+     * Increases the pheromone level of an Edge by the given amount.
+     */
+    public void raise(int edge, int amount) {
+        if (lazy) {
+            levels[edge] = level(edge);
+            lastTouched[edge] = ticks;
+        }
+        levels[edge] = levels[edge] + amount;
+    }
+
+    /**
+     * Sets the pheromone level of an Edge, as when a saved simulation is resumed.
+     */
+    public void set(int edge, int level) {
+        if (lazy) {
+            lastTouched[edge] = ticks;
+        }
+        levels[edge] = level;
+    }
+
+    /**
+     * Increases the pheromone level of an Edge by the given amount with an atomic
+     * add, so several threads can raise levels at the same time. Only the eager
+     * mode supports this, since a lazy raise also has to update the tick stamp.
+     */
+    public void raiseConcurrently(int edge, int amount) {
+        if (lazy) {
+            throw new IllegalStateException("Concurrent raises need eager evaporation");
+        }
+        LEVEL.getAndAdd(levels, edge, amount);
+    }
+
+    /**
+     * Decreases the pheromone level of every Edge by one unit, never going below
+     * zero. The loop has no branches, so the JIT can run it with vector
+     * instructions.
+     */
+    public void decay() {
+        if (lazy) {
+            ticks = ticks + 1;
+            return;
+        }
+        int[] levels = this.levels;
+        for (int i = 0; i < levels.length; i = i + 1) {
+            levels[i] = Math.max(levels[i] - 1, 0);
+        }
+    }
+
+    /**
+     * Switches between reducing every level on each tick and reducing a level
+     * only when its Edge is used. The levels are brought up to date first, so
+     * the switch can happen at any point of a simulation.
+     */
+    public void setLazy(boolean lazy) {
+        if (lazy == this.lazy) {
+            return;
+        }
+        if (lazy) {
+            this.lastTouched = new int[levels.length];
+            this.ticks = 0;
+        } else {
+            for (int i = 0; i < levels.length; i = i + 1) {
+                levels[i] = level(i);
+            }
+            this.lastTouched = null;
+        }
+        this.lazy = lazy;
+    }
+
+    /**
+     * Returns true if the levels are reduced only when their Edge is used.
+     */
+    public boolean isLazy() {
+        return lazy;
+    }
+
+    /**
+     * Returns the number of edges in the store.
+     */
+    public int size() {
+        return levels.length;
+    }
+}
@@ -0,0 +1,141 @@
+/**
+ * A SugarDistribution draws amounts of sugar from a Poisson distribution with a
+ * fixed mean, the sugarAverage of a Graph, by inverse transform sampling. The
+ * cumulative probabilities are computed once, from twelve standard deviations
+ * below the mean to twelve above, beyond which the probability is too small
+ * for a double to notice. A guide table tells where to start searching for a
+ * uniform random number, so a draw takes one random number and about two
+ * comparisons, whatever the mean. Counting Poisson events one at a time, as
+ * RandomSource.randomPoisson does, takes about mean + 1 random numbers.
+ *
+ * A second table holds the sugar on a Node when a Graph is filled in: none
+ * with probability 1 - sugarProbability, and else a Poisson amount. fill()
+ * draws that for a whole array of nodes with one random number per Node.
+ *
+ * When sugar spawns on every Node with probability sugarProbability, skip()
+ * draws how many nodes go by without sugar before the next one that gets
+ * some, so the spawning nodes of a tick are found in as many draws as there
+ * are spawns.
+ */
+public class SugarDistribution {
+    private static final int SPREAD = 12;
+
+    private Table spawns;
+    private Table initial;
+    private double probability;
+    private double logMiss;
+
+    /**
+     * Constructor computes the tables for the given probability of a Node
+     * holding sugar at the start and the given average amount.
+     */
+    public SugarDistribution(double sugarProbability, double sugarAverage) {
+        sugarAverage = Math.max(sugarAverage, 0.0);
+        int low = (int) Math.max(0, Math.floor(sugarAverage - SPREAD * Math.sqrt(sugarAverage) - SPREAD));
+        int high = (int) Math.ceil(sugarAverage + SPREAD * Math.sqrt(sugarAverage) + SPREAD);
+        int mode = (int) Math.floor(sugarAverage);
+        double[] masses = new double[high - low + 1];
+        masses[mode - low] = 1.0;
+        for (int k = mode; k < high; k = k + 1) {
+            masses[k + 1 - low] = masses[k - low] * sugarAverage / (k + 1);
+        }
+        for (int k = mode; k > low; k = k - 1) {
+            masses[k - 1 - low] = masses[k - low] * k / sugarAverage;
+        }
+        int[] values = new int[masses.length];
+        for (int k = 0; k < values.length; k = k + 1) {
+            values[k] = low + k;
+        }
+        this.spawns = new Table(values, masses);
+
+        this.probability = Math.min(Math.max(sugarProbability, 0.0), 1.0);
+        this.logMiss = Math.log1p(-probability);
+        double total = 0;
+        for (double mass : masses) {
+            total = total + mass;
+        }
+        int[] initialValues = new int[values.length + 1];
+        double[] initialMasses = new double[values.length + 1];
+        initialMasses[0] = 1.0 - probability;
+        for (int k = 0; k < values.length; k = k + 1) {
+            initialValues[k + 1] = values[k];
+            initialMasses[k + 1] = probability * masses[k] / total;
+        }
+        this.initial = new Table(initialValues, initialMasses);
+    }
+
+    /**
+     * Draws one Poisson amount of sugar.
+     */
+    public int sample(RandomSource random) {
+        return spawns.sample(random.randomDouble());
+    }
+
+    /**
+     * Draws the sugar at the start for the nodes from position from up to
+     * position to of the array, one random number each, in order.
+     */
+    public void fill(int[] sugar, int from, int to, RandomSource random) {
+        for (int i = from; i < to; i = i + 1) {
+            sugar[i] = initial.sample(random.randomDouble());
+        }
+    }
+
+    /**
+     * Draws the number of nodes without a spawn before the next Node with one,
+     * a geometric number, from one random number. Returns Integer.MAX_VALUE if
+     * sugar never spawns.
+     */
+    public int skip(RandomSource random) {
+        if (probability >= 1.0) {
+            return 0;
+        }
+        double skipped = Math.floor(Math.log(1.0 - random.randomDouble()) / logMiss);
+        return (int) Math.min(skipped, Integer.MAX_VALUE);
+    }
+
+    /**
+     * The cumulative probabilities of a list of values, with a guide table
+     * holding, for each of as many equal parts of [0, 1), the first value whose
+     * cumulative probability reaches into that part.
+     */
+    private static class Table {
+        private int[] values;
+        private double[] cumulative;
+        private int[] guide;
+
+        Table(int[] values, double[] masses) {
+            this.values = values;
+            this.cumulative = new double[masses.length];
+            double total = 0;
+            for (double mass : masses) {
+                total = total + mass;
+            }
+            double sum = 0;
+            for (int k = 0; k < masses.length; k = k + 1) {
+                sum = sum + masses[k];
+                cumulative[k] = sum / total;
+            }
+            cumulative[masses.length - 1] = 1.0;
+            this.guide = new int[masses.length];
+            int k = 0;
+            for (int g = 0; g < guide.length; g = g + 1) {
+                while (cumulative[k] <= (double) g / guide.length) {
+                    k = k + 1;
+                }
+                guide[g] = k;
+            }
+        }
+
+        /**
+         * Returns the value whose part of [0, 1) holds the given number.
+         */
+        int sample(double uniform) {
+            int k = guide[(int) (uniform * guide.length)];
+            while (cumulative[k] <= uniform) {
+                k = k + 1;
+            }
+            return values[k];
+        }
+    }
+}
@@ -0,0 +1,104 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The SugarIndex class keeps track of the sugar in a Graph without scanning
+ * its nodes: a sparse set of the numbers of the nodes that hold sugar, and
+ * running totals of the sugar on the nodes and in the colonies. The Graph
+ * reports every change of the sugar on a Node, and a Colony reports its own
+ * top-ups and consumption, so every count is kept up to date in constant time
+ * per change.
+ *
+ * Colonies are never in the set; their sugar is stock and only counts towards
+ * the colony total. The set is kept in an array in no particular order, with
+ * the position of every member, so nodes are added and removed in constant
+ * time and the members can be listed without looking at the other nodes. The
+ * array of members grows with the set, as few nodes hold sugar at a time.
+ *
+ * Colonies may report from several threads at once, so their total is a
+ * LongAdder. It is exact whenever no report is under way, such as between
+ * ticks.
+ */
+public class SugarIndex {
+    private int[] members;
+    private int[] positions;
+    private int count;
+    private long nodeTotal;
+    private LongAdder colonyTotal = new LongAdder();
+
+    /**
+     * Constructor creates an empty index for a graph with the given number of
+     * nodes.
+     */
+    public SugarIndex(int nodeCount) {
+        this.members = new int[Math.min(nodeCount, 16)];
+        this.positions = new int[nodeCount];
+        Arrays.fill(positions, -1);
+    }
+
+    /**
+     * Records that the sugar on the Node with the given number, which is not a
+     * Colony, changed from before to after.
+     */
+    public void nodeChanged(int node, int before, int after) {
+        nodeTotal = nodeTotal + after - before;
+        if (after > 0 && positions[node] < 0) {
+            if (count == members.length) {
+                members = Arrays.copyOf(members, count * 2);
+            }
+            positions[node] = count;
+            members[count] = node;
+            count = count + 1;
+        } else if (after <= 0 && positions[node] >= 0) {
+            int last = members[count - 1];
+            members[positions[node]] = last;
+            positions[last] = positions[node];
+            positions[node] = -1;
+            count = count - 1;
+        }
+    }
+
+    /**
+     * Records that the stock of a Colony changed from before to after. May be
+     * called by several threads at once.
+     */
+    public void colonyChanged(int before, int after) {
+        colonyTotal.add((long) after - before);
+    }
+
+    /**
+     * Returns the number of nodes holding sugar.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Returns the number of the k-th Node holding sugar, for k from 0 up to
+     * size(). The order changes as sugar comes and goes.
+     */
+    public int node(int k) {
+        return members[k];
+    }
+
+    /**
+     * Returns whether the Node with the given number holds sugar.
+     */
+    public boolean contains(int node) {
+        return positions[node] >= 0;
+    }
+
+    /**
+     * Returns the sugar on all nodes that are not colonies.
+     */
+    public long nodeSugar() {
+        return nodeTotal;
+    }
+
+    /**
+     * Returns the sugar stock of all colonies.
+     */
+    public long colonySugar() {
+        return colonyTotal.sum();
+    }
+}